@@ -0,0 +1,153 @@
+package cn.sissors.blendoku;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解题各阶段的基准测试：读图、提取色块、成簇检查、提取地图、解析、推导扩展、计算偏离值与完整搜索
+ * <p>
+ * 关卡为打包在主工程中的截图，按地图大小与候选色块数量由小到大选取：
+ * 2.PNG：5*1，4个候选色块；5.PNG：7*4，12个；7.PNG：8*4，21个；11.PNG：11*6，26个
+ * 按地图大小与候选色块数量变化的生成关卡见GeneratedLevelBenchmark
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlendokuBenchmark {
+    @Param({"2.PNG", "5.PNG", "7.PNG", "11.PNG"})
+    private String level;
+
+    private final BlendokuSolver solver = new BlendokuSolver();
+    // 完整深度优先搜索的配置，不受blendoku.*系统属性影响
+    private final SolverOptions options = SolverOptions.defaults().withSearchMode("dfs").withParallelism(1).withTimeoutMillis(0);
+    private Blendoku blendoku;
+    private BufferedImage image;
+    private Puzzle puzzle;
+    private ImageRGB imageRGB;
+    private List<ColorBlock> candidateBlockList;
+    private CandidateIndex candidateIndex;
+    // 搜索得到的最优解与它的线段索引，用于计算偏离值
+    private MissionMap solvedMap;
+    private SegmentIndex solvedIndex;
+
+    @Setup
+    public void setup() throws IOException {
+        blendoku = new Blendoku(level);
+        imageRGB = Blendoku.readImage(level);
+        try (InputStream inputStream = BlendokuBenchmark.class.getResourceAsStream("/" + level)) {
+            image = ImageIO.read(inputStream);
+        }
+        puzzle = solver.parse(image);
+        candidateBlockList = blendoku.fetchCandidateBlock(imageRGB);
+        candidateIndex = new CandidateIndex(blendoku.getCandidateColors(), options.getCandidateEquivalenceDeviation());
+        solvedMap = solver.solve(puzzle, options).getMissionMap();
+        solvedIndex = new SegmentIndex(solvedMap, new Zobrist(solvedMap.getWidth() * solvedMap.getHeight(), candidateIndex.size()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        solver.close();
+    }
+
+    /**
+     * 读入PNG并转换为ImageRGB；成簇检查的前缀和索引在第一次成簇检查时才建立，不计入这一项
+     */
+    @Benchmark
+    public ImageRGB readImage() {
+        return Blendoku.readImage(level);
+    }
+
+    /**
+     * 提取候选区与地图区的色块
+     */
+    @Benchmark
+    public void fetchColorBlock(Blackhole blackhole) {
+        blackhole.consume(blendoku.fetchCandidateBlock(imageRGB));
+        blackhole.consume(blendoku.fetchFixedBlock(imageRGB));
+    }
+
+    /**
+     * 对每个候选色块的锚点做一次成簇检查
+     */
+    @Benchmark
+    public int checkColorCluster() {
+        int clusters = 0;
+        for (ColorBlock block : candidateBlockList) {
+            if (blendoku.checkColorCluster(imageRGB, block.getAnchorX(), block.getAnchorY(),
+                    Blendoku.COLOR_BLOCK_CHECK_BOUND, Blendoku.COLOR_BLOCK_CHECK_BOUND, Blendoku.COLOR_BLOCK_CHECK_BOUND, Blendoku.COLOR_BLOCK_CHECK_BOUND)) {
+                clusters++;
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * 检测网格并生成地图
+     */
+    @Benchmark
+    public MissionMap fetchMissionMap() {
+        return blendoku.fetchMissionMap(imageRGB);
+    }
+
+    /**
+     * 由已经解码的截图解析关卡，临时数组复用同一线程的SolverArena
+     */
+    @Benchmark
+    public Puzzle parse() {
+        return solver.parse(image);
+    }
+
+    /**
+     * 由给定色块推导扩展初始地图，包括建立搜索状态
+     */
+    @Benchmark
+    public int expand() {
+        MissionSearch missionSearch = new MissionSearch(MissionMap.clone(blendoku.getMissionMap()), CandidateIndex.clone(candidateIndex),
+                new Incumbent(), null, SearchBudget.unlimited());
+        return missionSearch.expandMissionMap();
+    }
+
+    /**
+     * 计算放置完的地图上所有线段的偏离值
+     */
+    @Benchmark
+    public double evaluateMissionMap() {
+        double deviation = 0;
+        for (int s = 0; s < solvedIndex.getCount(); s++) {
+            deviation += solvedIndex.evaluate(solvedMap, s);
+        }
+        return deviation;
+    }
+
+    /**
+     * 完整深度优先搜索，置换表复用同一线程的SolverArena
+     */
+    @Benchmark
+    public double resolveMissionMap() {
+        return solver.solve(puzzle, options).getDeviation();
+    }
+}
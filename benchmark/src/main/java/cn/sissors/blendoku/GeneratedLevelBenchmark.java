@@ -0,0 +1,143 @@
+package cn.sissors.blendoku;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由PuzzleGenerator按固定种子生成关卡的基准测试，两组参数互不组合：
+ * <p>
+ * Level：解析、推导扩展与完整搜索随地图大小与候选色块数量的变化。
+ * 同一size与shape的种子相同，地图与颜色也相同，decoys只改变候选色块的数量（BLANK格子数加诱饵色数量），
+ * 因此固定size比较不同decoys时只有候选色块数量不同。
+ * <p>
+ * LargeLevel：一个需要真正分支搜索的10*10关卡（几乎没有FIXED，串行约6000个节点），
+ * 比较不同parallelism下完整深度优先搜索的时间，即并行搜索随核数的扩展性
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratedLevelBenchmark {
+    // 生成关卡的种子，与PuzzleGenerator.main的默认种子相同
+    private final static long SEED = 2019;
+    // 每个格子为FIXED的概率
+    private final static double FIXED_RATIO = 0.25;
+
+    @State(Scope.Benchmark)
+    public static class Level {
+        // 地图的宽与高
+        @Param({"4", "8", "12"})
+        private int size;
+        // 诱饵色数量
+        @Param({"0", "8", "16"})
+        private int decoys;
+        @Param({"RECTANGLE", "STROKES"})
+        private PuzzleGenerator.Shape shape;
+
+        private final BlendokuSolver solver = new BlendokuSolver();
+        // 完整深度优先搜索的配置，不受blendoku.*系统属性影响
+        private final SolverOptions options = SolverOptions.defaults().withSearchMode("dfs").withParallelism(1).withTimeoutMillis(0);
+        private BufferedImage image;
+        private Puzzle puzzle;
+        private CandidateIndex candidateIndex;
+
+        @Setup
+        public void setup() {
+            PuzzleGenerator generator = new PuzzleGenerator(SEED * 31 + size * 2 + shape.ordinal());
+            String name = String.format("%s-%02dx%02d-%d", shape.name().toLowerCase(), size, size, decoys);
+            image = PuzzleGenerator.render(generator.generate(name, size, size, shape, 3, size, FIXED_RATIO, decoys));
+            puzzle = solver.parse(image);
+            candidateIndex = new CandidateIndex(puzzle.getCandidateColors(), options.getCandidateEquivalenceDeviation());
+        }
+
+        @TearDown
+        public void tearDown() {
+            solver.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LargeLevel {
+        private final static int SIZE = 10;
+        // 在STROKES形状、每格0.05的FIXED概率与8个诱饵色下，逐个尝试种子得到的较难关卡
+        private final static long SEED = 6;
+        private final static double FIXED_RATIO = 0.05;
+        private final static int DECOYS = 8;
+
+        // 并行搜索的线程数，0为CPU核数
+        @Param({"1", "2", "4", "0"})
+        private int parallelism;
+
+        private final BlendokuSolver solver = new BlendokuSolver();
+        private SolverOptions options;
+        private Puzzle puzzle;
+
+        @Setup
+        public void setup() {
+            int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+            options = SolverOptions.defaults().withSearchMode("dfs").withParallelism(threads).withTimeoutMillis(0);
+            PuzzleGenerator generator = new PuzzleGenerator(SEED);
+            puzzle = solver.parse(PuzzleGenerator.render(generator.generate("strokes-10x10-large", SIZE, SIZE, PuzzleGenerator.Shape.STROKES,
+                    3, SIZE, FIXED_RATIO, DECOYS)));
+        }
+
+        @TearDown
+        public void tearDown() {
+            solver.close();
+        }
+    }
+
+    /**
+     * 由渲染好的截图解析关卡，临时数组复用同一线程的SolverArena
+     */
+    @Benchmark
+    public Puzzle parse(Level level) {
+        return level.solver.parse(level.image);
+    }
+
+    /**
+     * 由给定色块推导扩展初始地图，包括建立搜索状态
+     */
+    @Benchmark
+    public int expand(Level level) {
+        MissionSearch missionSearch = new MissionSearch(MissionMap.clone(level.puzzle.getMissionMap()), CandidateIndex.clone(level.candidateIndex),
+                new Incumbent(), null, SearchBudget.unlimited());
+        return missionSearch.expandMissionMap();
+    }
+
+    /**
+     * 完整深度优先搜索，置换表复用同一线程的SolverArena
+     */
+    @Benchmark
+    public double resolveMissionMap(Level level) {
+        return level.solver.solve(level.puzzle, level.options).getDeviation();
+    }
+
+    /**
+     * 较难关卡的完整深度优先搜索，parallelism大于1时前两层拆分为ForkJoin任务；每次几秒，减少迭代次数
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1, time = 1)
+    @Measurement(iterations = 3, time = 1)
+    public double resolveLargeLevel(LargeLevel level) {
+        return level.solver.solve(level.puzzle, level.options).getDeviation();
+    }
+}
@@ -0,0 +1,119 @@
+package cn.sissors.blendoku;
+
+import java.util.Arrays;
+
+/**
+ * 最小费用指派（匈牙利算法），用于计算格子与候选色块一一对应时的最小偏离值
+ * <p>
+ * 费用矩阵与算法的工作数组在构造时按最大行列数分配，之后每次计算都复用，不再分配内存；不是线程安全的
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class Assignment {
+    private final int maxRows;
+    private final int maxColumns;
+    // 费用矩阵，cost[i][j]为第i行指派给第j列的费用
+    private final double[][] cost;
+    // 行与列的势、每列匹配的行与增广路径上的前一列，均从1开始编号，第0列为虚拟列
+    private final double[] u;
+    private final double[] v;
+    private final int[] match;
+    private final int[] way;
+    private final double[] minimal;
+    private final boolean[] used;
+
+    /**
+     * @param maxRows    最大行数
+     * @param maxColumns 最大列数
+     */
+    public Assignment(int maxRows, int maxColumns) {
+        this.maxRows = maxRows;
+        this.maxColumns = maxColumns;
+        this.cost = new double[maxRows][maxColumns];
+        this.u = new double[maxRows + 1];
+        this.v = new double[maxColumns + 1];
+        this.match = new int[maxColumns + 1];
+        this.way = new int[maxColumns + 1];
+        this.minimal = new double[maxColumns + 1];
+        this.used = new boolean[maxColumns + 1];
+    }
+
+    /**
+     * @param i 行号
+     * @return 费用矩阵的第i行，调用者在minCost之前填入前m列
+     */
+    public double[] getRow(int i) {
+        return cost[i];
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public int getMaxColumns() {
+        return maxColumns;
+    }
+
+    /**
+     * 把n行分别指派给m列中互不相同的一列，求费用之和的最小值，复杂度O(n * n * m)
+     *
+     * @param n 行数，不超过maxRows
+     * @param m 列数，不超过maxColumns
+     * @return 最小费用，n > m时无法指派，为正无穷
+     */
+    public double minCost(int n, int m) {
+        if (n > m) {
+            return Double.POSITIVE_INFINITY;
+        }
+        Arrays.fill(u, 0, n + 1, 0);
+        Arrays.fill(v, 0, m + 1, 0);
+        Arrays.fill(match, 0, m + 1, 0);
+        Arrays.fill(way, 0, m + 1, 0);
+        for (int i = 1; i <= n; i++) {
+            match[0] = i;
+            int j0 = 0;
+            Arrays.fill(minimal, 0, m + 1, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, 0, m + 1, false);
+            do {
+                used[j0] = true;
+                int i0 = match[j0], j1 = 0;
+                double delta = Double.POSITIVE_INFINITY;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        double current = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (current < minimal[j]) {
+                            minimal[j] = current;
+                            way[j] = j0;
+                        }
+                        if (minimal[j] < delta) {
+                            delta = minimal[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[match[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minimal[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (match[j0] != 0);
+            do {
+                int j1 = way[j0];
+                match[j0] = match[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+        double total = 0;
+        for (int j = 1; j <= m; j++) {
+            if (match[j] != 0) {
+                total += cost[match[j] - 1][j - 1];
+            }
+        }
+        return total;
+    }
+}
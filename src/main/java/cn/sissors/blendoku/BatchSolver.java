@@ -0,0 +1,254 @@
+package cn.sissors.blendoku;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * 批量求解：在一个JVM中依次处理一个目录下的所有截图，或一个列表文件中的所有路径
+ * <p>
+ * 读图、解析、搜索是三个流水线阶段，各有固定数量的工作线程，阶段之间是有界队列：
+ * 下游处理不过来时上游在put处阻塞，因此同时在内存中的截图数量有上限，与批量大小无关。
+ * 每个结果在搜索完成后立即写成一行JSON（按完成顺序，而不是输入顺序），不在内存中累积。
+ * 解析与搜索共用一个BlendokuSolver，每个工作线程反复使用自己的SolverArena；close()时关闭它的线程池。
+ * 用法：BatchSolver 截图目录|列表文件|- [输出文件]，列表文件每行一个路径，-表示从标准输入读取列表；
+ * 输出文件默认为results.jsonl。搜索阶段的线程数由blendoku.batch.workers设置，默认为CPU核数，
+ * 每个关卡的时间预算由blendoku.timeout设置。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class BatchSolver implements AutoCloseable {
+    // 搜索阶段的线程数
+    private final static int WORKERS = Integer.getInteger("blendoku.batch.workers", Runtime.getRuntime().availableProcessors());
+    // 读图与解析阶段的线程数
+    private final static int DECODE_WORKERS = Math.max(1, WORKERS / 2);
+    // 阶段之间队列的容量
+    private final static int QUEUE_CAPACITY = 2 * WORKERS;
+
+    /**
+     * 流水线中的一张截图，各阶段依次填入自己的结果与耗时
+     */
+    private static class BatchItem {
+        private final Path path;
+        private BufferedImage image;
+        private Puzzle puzzle;
+        private SearchResult result;
+        private String error;
+        private long decodeNanos;
+        private long parseNanos;
+        private long solveNanos;
+
+        BatchItem(Path path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * 一个阶段对一张截图的处理
+     */
+    private interface Stage {
+        void process(BatchItem item) throws Exception;
+    }
+
+    // 队列结束标记，每个下游工作线程收到一个后退出
+    private final static BatchItem POISON = new BatchItem(null);
+
+    private final BlendokuSolver solver = new BlendokuSolver();
+    private final SolverOptions options = SolverOptions.defaults();
+    private final BlockingQueue<BatchItem> decodeQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<BatchItem> parseQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<BatchItem> solveQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<BatchItem> resultQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * 处理所有截图并写出结果
+     *
+     * @param paths  截图路径，按需逐个读取
+     * @param writer 结果输出
+     * @return 处理的截图数量
+     * @throws IOException 写出结果失败；或者列出截图失败，此时已经列出的截图都已处理并写出
+     */
+    public int solve(Iterator<Path> paths, Writer writer) throws IOException, InterruptedException {
+        startStage("decode", DECODE_WORKERS, decodeQueue, parseQueue, DECODE_WORKERS, this::decode);
+        startStage("parse", DECODE_WORKERS, parseQueue, solveQueue, WORKERS, this::parse);
+        startStage("solve", WORKERS, solveQueue, resultQueue, 1, this::search);
+        // 列出截图时的异常，所有结果写出后再抛出
+        AtomicReference<Throwable> listingError = new AtomicReference<>();
+        Thread feeder = new Thread(() -> {
+            try {
+                try {
+                    while (paths.hasNext()) {
+                        decodeQueue.put(new BatchItem(paths.next()));
+                    }
+                } catch (RuntimeException | Error e) {
+                    // 列出截图出错时，已经列出的截图仍然正常处理
+                    listingError.set(e);
+                }
+                for (int k = 0; k < DECODE_WORKERS; k++) {
+                    decodeQueue.put(POISON);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "batch-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+        int count = 0;
+        for (BatchItem item = resultQueue.take(); item != POISON; item = resultQueue.take()) {
+            writer.write(toJson(item));
+            writer.write('\n');
+            writer.flush();
+            count++;
+        }
+        Throwable error = listingError.get();
+        if (error != null) {
+            throw new IOException("listing screenshots failed after " + count + " screenshots",
+                    error instanceof UncheckedIOException ? error.getCause() : error);
+        }
+        return count;
+    }
+
+    /**
+     * 启动一个阶段的工作线程：从input取出截图处理后放入output；出错的截图（包括StackOverflowError、OutOfMemoryError等Error）
+     * 记录错误后直接向下游传递，工作线程继续处理下一张。
+     * 最后一个退出的工作线程向output放入downstream个结束标记，工作线程无论怎样退出都会计数，保证下游一定能结束
+     */
+    private void startStage(String name, int workers, BlockingQueue<BatchItem> input, BlockingQueue<BatchItem> output, int downstream, Stage stage) {
+        AtomicInteger running = new AtomicInteger(workers);
+        for (int w = 0; w < workers; w++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (BatchItem item = input.take(); item != POISON; item = input.take()) {
+                        if (item.error == null) {
+                            try {
+                                stage.process(item);
+                            } catch (Exception | Error e) {
+                                item.error = e.toString();
+                                // 出错的截图不再处理，尽早释放解码后的像素
+                                item.image = null;
+                            }
+                        }
+                        output.put(item);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        for (int k = 0; k < downstream; k++) {
+                            Uninterruptibles.putUninterruptibly(output, POISON);
+                        }
+                    }
+                }
+            }, "batch-" + name + "-" + w);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void decode(BatchItem item) throws IOException {
+        long start = System.nanoTime();
+        item.image = ImageIO.read(item.path.toFile());
+        if (item.image == null) {
+            throw new IOException("unsupported image format");
+        }
+        item.decodeNanos = System.nanoTime() - start;
+    }
+
+    private void parse(BatchItem item) {
+        long start = System.nanoTime();
+        item.puzzle = solver.parse(item.image);
+        item.image = null;
+        item.parseNanos = System.nanoTime() - start;
+    }
+
+    private void search(BatchItem item) {
+        long start = System.nanoTime();
+        item.result = solver.solve(item.puzzle, options);
+        item.solveNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * 一个结果的JSON：地图、候选色块、最优解中每个BLANK的[x, y, 候选色块下标]、偏离值、搜索计数（见SolverMetrics）与各阶段耗时（毫秒）；出错时只有error
+     */
+    private static String toJson(BatchItem item) {
+        StringBuilder json = new StringBuilder("{\"file\":").append(Json.string(item.path.toString()));
+        if (item.error != null) {
+            json.append(",\"error\":").append(Json.string(item.error));
+        } else {
+            MissionMap missionMap = item.puzzle.getMissionMap();
+            SearchResult result = item.result;
+            json.append(",\"width\":").append(missionMap.getWidth())
+                    .append(",\"height\":").append(missionMap.getHeight())
+                    .append(",\"board\":").append(Json.board(missionMap))
+                    .append(",\"candidates\":").append(Json.colors(item.puzzle.getCandidateColors()))
+                    .append(",\"assignment\":").append(result.getMissionMap() != null ? Json.assignment(result.getMissionMap()) : "null")
+                    .append(",\"deviation\":").append(Json.number(result.getDeviation()))
+                    .append(",\"exhausted\":").append(result.isExhausted())
+                    .append(",\"metrics\":").append(result.getMetrics().toJson());
+        }
+        json.append(",\"timings\":{\"decode\":").append(millis(item.decodeNanos))
+                .append(",\"parse\":").append(millis(item.parseNanos))
+                .append(",\"solve\":").append(millis(item.solveNanos)).append("}}");
+        return json.toString();
+    }
+
+    private static double millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0;
+    }
+
+    /**
+     * @param source 截图目录、列表文件，或-表示从标准输入读取列表
+     * @return 按需读取的截图路径；目录下只取.png文件
+     */
+    private static Stream<Path> listPaths(String source) throws IOException {
+        if ("-".equals(source)) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).lines()
+                    .map(String::trim).filter(line -> !line.isEmpty()).map(Paths::get);
+        }
+        Path path = Paths.get(source);
+        if (Files.isDirectory(path)) {
+            return Files.walk(path).filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().toLowerCase().endsWith(".png"));
+        }
+        return Files.lines(path, StandardCharsets.UTF_8).map(String::trim).filter(line -> !line.isEmpty()).map(Paths::get);
+    }
+
+    @Override
+    public void close() {
+        solver.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: BatchSolver <directory|list file|-> [output.jsonl]");
+            System.exit(1);
+        }
+        Path output = Paths.get(args.length > 1 ? args[1] : "results.jsonl");
+        long start = System.nanoTime();
+        try (Stream<Path> paths = listPaths(args[0]);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8);
+             BatchSolver batchSolver = new BatchSolver()) {
+            int count = batchSolver.solve(paths.iterator(), writer);
+            System.err.println("solved " + count + " screenshots in " + millis(System.nanoTime() - start) + " ms, results: " + output);
+        }
+    }
+}
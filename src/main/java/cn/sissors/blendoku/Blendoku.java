@@ -1,71 +1,130 @@
 package cn.sissors.blendoku;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.function.ToIntFunction;
 
 @SuppressWarnings("Duplicates")
 public class Blendoku {
     // 截图文件名
     private final static String IMAGE_FILENAME = "11.PNG";
     // 候选区与地图的交界Y值
-    private final static int CANDIDATE_BOTTOM_BOUND = 420;
+    final static int CANDIDATE_BOTTOM_BOUND = 420;
     // 地图与下方提示文字的交界Y值
-    private final static int MISSION_MAP_BOTTOM_BOUND = 1360;
+    final static int MISSION_MAP_BOTTOM_BOUND = 1360;
     // 色块检验的范围（正负30）
-    private final static int COLOR_BLOCK_CHECK_BOUND = 30;
+    final static int COLOR_BLOCK_CHECK_BOUND = 30;
+    // 空白格角标检验的范围（正负2），角标的线宽只有6像素左右
+    final static int BLANK_CORNER_CHECK_BOUND = 2;
     // 背景黑色的RGB
     private final static ColorRGB BLACK = new ColorRGB(0, 0, 0);
     // 地图中空缺位置灰色的RGB
-    private final static ColorRGB GREY = new ColorRGB(61, 61, 61);
+    final static ColorRGB GREY = new ColorRGB(61, 61, 61);
     // 背景色色差
     private final static int BACKGROUND_DEVIATION = 100;
     // 灰色色差
     private final static int GREY_DEVIATION = 75;
-    // 地图中空白位置的尺寸大小
-    private final static int BLANK_BLOCK_SIZE = 130;
-    // 地图中缝隙的尺寸大小
-    private final static int CHINK_SIZE = 15;
-    // 两个颜色的最大偏离值上限
-    private final static int MAX_SINGLE_LOSS = 256 * 256 * 256;
 
+    private List<ColorBlock> candidateBlockList;
+    private List<ColorBlock> fixedBlockList;
+    // 地图区中空白格的灰色角标，与fixedBlockList在同一次扫描中得到
+    private List<ColorBlock> cornerList;
     private List<ColorRGB> candidateColorList;
-    private Set<ColorRGB> fixedColorSet;
+    private int[] candidateColors;
     private MissionMap missionMap;
-    private int totalBlanks;
-    private boolean[] candidateColorUsed;
-    private double bestDeviation;
-    private MissionMap bestMap;
+    // 提取色块时洪泛填充的标记与栈所在的SolverArena，为null时各自分配
+    private SolverArena arena;
+    // 提取色块与检测网格的耗时，单位纳秒
+    private long segmentationNanos;
+    private long gridDetectionNanos;
 
-    private Blendoku() {
-        ImageRGB imageRGB = readImage(IMAGE_FILENAME);
-        candidateColorList = fetchCandidateColor(imageRGB);
-        fixedColorSet = fetchFixedColor(imageRGB);
-        missionMap = fetchMissionMap(imageRGB);
-        missionMap.print();
-        totalBlanks = 0;
-        for (int i = 0; i < missionMap.getWidth(); i++) {
-            for (int j = 0; j < missionMap.getHeight(); j++) {
-                if (missionMap.getPoint(i, j).getType() == MissionMap.Type.BLANK) {
-                    totalBlanks++;
-                }
-            }
+    /**
+     * 读入并解析截图
+     *
+     * @param imageName 截图文件名
+     */
+    public Blendoku(String imageName) {
+        this(readImage(imageName));
+    }
+
+    /**
+     * 解析已经读入的截图
+     *
+     * @param imageRGB ImageRGB对象
+     */
+    public Blendoku(ImageRGB imageRGB) {
+        this(imageRGB, null);
+    }
+
+    /**
+     * 解析已经读入的截图，临时数组取自arena，见BlendokuSolver
+     *
+     * @param imageRGB ImageRGB对象
+     * @param arena    当前线程的SolverArena，为null时各自分配
+     */
+    Blendoku(ImageRGB imageRGB, SolverArena arena) {
+        this.arena = arena;
+        long start = System.nanoTime();
+        candidateBlockList = fetchCandidateBlock(imageRGB);
+        fixedBlockList = fetchFixedBlock(imageRGB);
+        candidateColorList = Lists.newArrayList(Lists.transform(candidateBlockList, ColorBlock::getColor));
+        candidateColors = new int[candidateColorList.size()];
+        for (int k = 0; k < candidateColorList.size(); k++) {
+            candidateColors[k] = candidateColorList.get(k).getRGB();
         }
-        candidateColorUsed = new boolean[candidateColorList.size()];
-        for (int i = 0; i < candidateColorList.size(); i++) {
-            candidateColorUsed[i] = false;
+        long segmented = System.nanoTime();
+        missionMap = fetchMissionMap(imageRGB);
+        segmentationNanos = segmented - start;
+        gridDetectionNanos = System.nanoTime() - segmented;
+    }
+
+    /**
+     * 按blendoku.*系统属性设置的配置搜索，搜索统计输出到标准输出，见BlendokuSolver.solve
+     * 截图解析得到的地图不会被修改，可以多次调用
+     *
+     * @param budget   时间预算与取消标记
+     * @param listener 最优解更新时的回调，为null时不回调
+     * @return 搜索结果，isExhausted()表示搜索空间是否已经穷尽
+     */
+    public SearchResult resolve(SearchBudget budget, IncumbentListener listener) {
+        SolverOptions options = SolverOptions.defaults().withListener(listener).withLog(System.out);
+        try (BlendokuSolver solver = new BlendokuSolver()) {
+            return solver.solve(new Puzzle(missionMap, candidateColors), options, budget);
         }
-        bestDeviation = -1;
-        int n = expandMissionMap(missionMap);
-        resolveMissionMap(missionMap, n);
-        bestMap.print(candidateColorList);
+    }
+
+    public MissionMap getMissionMap() {
+        return missionMap;
+    }
+
+    /**
+     * @return 提取候选色块、给定色块与空白格角标的耗时，单位纳秒，包括建立成簇检查的前缀和索引
+     */
+    public long getSegmentationNanos() {
+        return segmentationNanos;
+    }
+
+    /**
+     * @return 由角标配对出空白格、检测网格并生成地图的耗时，单位纳秒
+     */
+    public long getGridDetectionNanos() {
+        return gridDetectionNanos;
+    }
+
+    /**
+     * @return 候选色块的sRGB，顺序与截图中从左到右的位置一致
+     */
+    public int[] getCandidateColors() {
+        return candidateColors;
     }
 
     /**
@@ -74,19 +133,10 @@ public class Blendoku {
      * @param imageName 截图文件名
      * @return 一个包含所有像素sRGB信息的ImageRGB对象
      */
-    private ImageRGB readImage(String imageName) {
+    static ImageRGB readImage(String imageName) {
         ImageRGB imageRGB = null;
-        String imagePath = Objects.requireNonNull(this.getClass().getResource("/")).getPath() + imageName.trim();
-        try {
-            BufferedImage imageFile = ImageIO.read(new File(imagePath));
-            int width = imageFile.getWidth();
-            int height = imageFile.getHeight();
-            imageRGB = new ImageRGB(width, height);
-            for (int i = 0; i < width; i++) {
-                for (int j = 0; j < height; j++) {
-                    imageRGB.setColor(i, j, new ColorRGB(imageFile.getRGB(i, j)));
-                }
-            }
+        try (InputStream inputStream = Objects.requireNonNull(Blendoku.class.getResourceAsStream("/" + imageName.trim()))) {
+            imageRGB = ImageRGB.of(ImageIO.read(inputStream));
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -94,473 +144,354 @@ public class Blendoku {
     }
 
     /**
-     * 从ImageRGB中，提取待放置的色块颜色
+     * 从ImageRGB中，提取待放置的色块，相同颜色的色块各自保留
      *
      * @param imageRGB ImageRGB对象
-     * @return 一个包含候选色块sRGB的列表
+     * @return 一个包含候选色块的列表，顺序与截图中从左到右的位置一致
      */
-    private List<ColorRGB> fetchCandidateColor(ImageRGB imageRGB) {
-        return fetchColorBlock(imageRGB, 0, imageRGB.getWidth(), 0, CANDIDATE_BOTTOM_BOUND);
+    List<ColorBlock> fetchCandidateBlock(ImageRGB imageRGB) {
+        return fetchColorBlock(imageRGB, 0, imageRGB.getWidth(), 0, CANDIDATE_BOTTOM_BOUND,
+                COLOR_BLOCK_CHECK_BOUND, COLOR_BLOCK_CHECK_BOUND, COLOR_BLOCK_CHECK_BOUND, COLOR_BLOCK_CHECK_BOUND);
     }
 
     /**
-     * 从ImageRGB中，提取地图上初始时已经给定的色块颜色
+     * 从ImageRGB中，提取地图上初始时已经给定的色块；同一次扫描中把空白格的灰色角标记录下来，供fetchMissionMap配对
      *
      * @param imageRGB ImageRGB对象
-     * @return 一个包含初始放置好的色块sRGB的列表
+     * @return 一个包含初始放置好的色块的列表
      */
-    private Set<ColorRGB> fetchFixedColor(ImageRGB imageRGB) {
-        return Sets.newHashSet(fetchColorBlock(imageRGB, 0, imageRGB.getWidth(), CANDIDATE_BOTTOM_BOUND, MISSION_MAP_BOTTOM_BOUND));
+    List<ColorBlock> fetchFixedBlock(ImageRGB imageRGB) {
+        cornerList = Lists.newArrayList();
+        return fetchColorBlock(imageRGB, 0, imageRGB.getWidth(), CANDIDATE_BOTTOM_BOUND, MISSION_MAP_BOTTOM_BOUND,
+                COLOR_BLOCK_CHECK_BOUND, COLOR_BLOCK_CHECK_BOUND, COLOR_BLOCK_CHECK_BOUND, COLOR_BLOCK_CHECK_BOUND, cornerList);
     }
 
     /**
      * 从ImageRGB中，提取关卡要解决的地图，主体是一个n*m的二维数组
+     * 以色块为单位检测网格：把空白格与给定色块的中心按横纵坐标聚成列与行，由行列间距直接算出每个色块所在的格子
      *
      * @param imageRGB ImageRGB对象
      * @return 一个MissionMap对象，包含关卡的地图
      */
-    @SuppressWarnings("Duplicates")
-    private MissionMap fetchMissionMap(ImageRGB imageRGB) {
-        int leftBound, rightBound, topBound, bottomBound;
-        leftBound = rightBound = topBound = bottomBound = -1;
-        for (int i = 0; i < imageRGB.getWidth(); i++) {
-            for (int j = CANDIDATE_BOTTOM_BOUND; j < MISSION_MAP_BOTTOM_BOUND; j++) {
-                if (!imageRGB.getColor(i, j).equals(BLACK)
-                        && (imageRGB.getColor(i, j).isGrey() || fixedColorSet.contains(imageRGB.getColor(i, j)))) {
-                    leftBound = i;
-                    if (fixedColorSet.contains(imageRGB.getColor(i, j))) {
-                        leftBound += 7;
-                    }
-                    break;
-                }
-            }
-            if (leftBound > -1) {
-                break;
-            }
+    MissionMap fetchMissionMap(ImageRGB imageRGB) {
+        if (cornerList == null) {
+            fetchFixedBlock(imageRGB);
         }
-        for (int i = imageRGB.getWidth() - 1; i >= 0; i--) {
-            for (int j = CANDIDATE_BOTTOM_BOUND; j < MISSION_MAP_BOTTOM_BOUND; j++) {
-                if (!imageRGB.getColor(i, j).equals(BLACK)
-                        && (imageRGB.getColor(i, j).isGrey() || fixedColorSet.contains(imageRGB.getColor(i, j)))) {
-                    rightBound = i;
-                    if (fixedColorSet.contains(imageRGB.getColor(i, j))) {
-                        rightBound -= 6;
-                    }
-                    break;
-                }
-            }
-            if (rightBound > -1) {
-                break;
+        List<ColorBlock> tileBlockList = fetchBlankBlock();
+        int blankCount = tileBlockList.size();
+        for (ColorBlock fixedBlock : fixedBlockList) {
+            if (!isBlankColor(fixedBlock.getRGB())) {
+                tileBlockList.add(fixedBlock);
             }
         }
-        for (int j = CANDIDATE_BOTTOM_BOUND; j < MISSION_MAP_BOTTOM_BOUND; j++) {
-            for (int i = 0; i < imageRGB.getWidth(); i++) {
-                if (!imageRGB.getColor(i, j).equals(BLACK)
-                        && (imageRGB.getColor(i, j).isGrey() || fixedColorSet.contains(imageRGB.getColor(i, j)))) {
-                    topBound = j;
-                    if (fixedColorSet.contains(imageRGB.getColor(i, j))) {
-                        topBound += 7;
-                    }
-                    break;
-                }
-            }
-            if (topBound > -1) {
-                break;
-            }
+        if (tileBlockList.isEmpty()) {
+            return new MissionMap(0, 0);
         }
-        for (int j = MISSION_MAP_BOTTOM_BOUND; j > CANDIDATE_BOTTOM_BOUND; j--) {
-            for (int i = 0; i < imageRGB.getWidth(); i++) {
-                if (!imageRGB.getColor(i, j).equals(BLACK)
-                        && (imageRGB.getColor(i, j).isGrey() || fixedColorSet.contains(imageRGB.getColor(i, j)))) {
-                    bottomBound = j;
-                    if (fixedColorSet.contains(imageRGB.getColor(i, j))) {
-                        bottomBound -= 6;
-                    }
-                    break;
-                }
-            }
-            if (bottomBound > -1) {
-                break;
-            }
+        double[] centerX = new double[tileBlockList.size()];
+        double[] centerY = new double[tileBlockList.size()];
+        int tileSize = Integer.MAX_VALUE;
+        for (int k = 0; k < tileBlockList.size(); k++) {
+            ColorBlock block = tileBlockList.get(k);
+            centerX[k] = (block.getMinX() + block.getMaxX()) / 2.0;
+            centerY[k] = (block.getMinY() + block.getMaxY()) / 2.0;
+            tileSize = Math.min(tileSize, Math.min(block.getWidth(), block.getHeight()));
         }
-        System.out.println(leftBound + " " + rightBound + " " + topBound + " " + bottomBound);
-        int missionWidth = (rightBound - leftBound + CHINK_SIZE) / (BLANK_BLOCK_SIZE + CHINK_SIZE);
-        int missionHeight = (bottomBound - topBound + CHINK_SIZE) / (BLANK_BLOCK_SIZE + CHINK_SIZE);
+        double[] columns = clusterCenter(centerX, tileSize / 2.0);
+        double[] rows = clusterCenter(centerY, tileSize / 2.0);
+        double pitch = Math.min(minimalGap(columns), minimalGap(rows));
+        int missionWidth = gridIndex(columns[columns.length - 1], columns[0], pitch) + 1;
+        int missionHeight = gridIndex(rows[rows.length - 1], rows[0], pitch) + 1;
         MissionMap missionMap = new MissionMap(missionWidth, missionHeight);
-        for (int i = leftBound; i <= rightBound; i++) {
-            for (int j = topBound; j <= bottomBound; j++) {
-                MissionMap.Type blockType = null;
-                ColorRGB blockColor = null;
-                if (imageRGB.getColor(i, j).isGrey() && deviation(imageRGB.getColor(i, j), GREY) <= GREY_DEVIATION
-                        && checkColorCluster(imageRGB, i, j, 15, 0, 6, 0)) {
-                    blockType = MissionMap.Type.BLANK;
-                } else if (fixedColorSet.contains(imageRGB.getColor(i, j))
-                        && checkColorCluster(imageRGB, i, j, COLOR_BLOCK_CHECK_BOUND)) {
-                    blockType = MissionMap.Type.FIXED;
-                    blockColor = imageRGB.getColor(i, j);
-                }
-                if (blockType != null) {
-                    int x = 0, y = 0;
-                    for (int u = i - leftBound; u - CHINK_SIZE - BLANK_BLOCK_SIZE >= 0; u = u - CHINK_SIZE - BLANK_BLOCK_SIZE) {
-                        x++;
-                    }
-                    for (int v = j - topBound; v - CHINK_SIZE - BLANK_BLOCK_SIZE >= 0; v = v - CHINK_SIZE - BLANK_BLOCK_SIZE) {
-                        y++;
-                    }
-                    missionMap.setPoint(x, y, blockType, blockColor);
-                }
+        for (int k = 0; k < tileBlockList.size(); k++) {
+            int x = gridIndex(centerX[k], columns[0], pitch);
+            int y = gridIndex(centerY[k], rows[0], pitch);
+            if (k < blankCount) {
+                missionMap.setPoint(x, y, MissionMap.Type.BLANK, null);
+            } else {
+                missionMap.setPoint(x, y, MissionMap.Type.FIXED, tileBlockList.get(k).getColor());
             }
         }
         return missionMap;
     }
 
     /**
-     * 优化一：对初始的地图，根据已经给定的初始方块位置，尝试推导空白位置的颜色，来扩展地图，缩小搜索树宽度
+     * 由fetchFixedBlock记录的角标配对出地图上的空白格
+     * 空白格只画出了四个灰色的角标，角标的重心偏向它所在的那个角；
+     * 以每个左上角标为起点，找到同一行右侧最近的右上角标、同一列下方最近的左下角标，三者的外接矩形即为空白格。
+     * 右上角标按minY分行、左下角标按minX分列放入哈希桶，桶的大小为最大的角标边长，桶内按另一个坐标排序，
+     * 每个左上角标只在相邻的三个桶内二分查找，不再两两比较所有角标
      *
-     * @param missionMap 初始地图MissionMap对象
-     * @return 推导并放置了色块的数量
+     * @return 空白格列表，颜色为角标的灰色
      */
-    private int expandMissionMap(MissionMap missionMap) {
-        int n = 0;
-        Set<Integer> usedColorSet = Sets.newHashSet();
-        for (int i = 0; i < missionMap.getWidth(); i++) {
-            for (int j = 0; j < missionMap.getHeight(); j++) {
-                if (missionMap.getPoint(i, j).getType() == MissionMap.Type.FIXED) {
-                    MissionMap.Coordinate[] queue = new MissionMap.Coordinate[missionMap.getWidth() * missionMap.getHeight()];
-                    int head = 0, tail = 1;
-                    queue[0] = new MissionMap.Coordinate(i, j);
-                    while (head < tail) {
-                        Set<MissionMap.Coordinate> expandSet = expand(missionMap, usedColorSet, queue[head].getX(), queue[head].getY());
-                        n += expandSet.size();
-                        for (MissionMap.Coordinate expandPoint : expandSet) {
-                            queue[tail++] = expandPoint;
-                        }
-                        head++;
-                    }
-                }
+    private List<ColorBlock> fetchBlankBlock() {
+        int bucketSize = 1;
+        for (ColorBlock corner : cornerList) {
+            bucketSize = Math.max(bucketSize, Math.max(corner.getWidth(), corner.getHeight()));
+        }
+        Map<Integer, List<ColorBlock>> rightCorners = new HashMap<>();
+        Map<Integer, List<ColorBlock>> bottomCorners = new HashMap<>();
+        for (ColorBlock corner : cornerList) {
+            if (!isLeftCorner(corner) && isTopCorner(corner)) {
+                rightCorners.computeIfAbsent(corner.getMinY() / bucketSize, key -> Lists.newArrayList()).add(corner);
+            } else if (isLeftCorner(corner) && !isTopCorner(corner)) {
+                bottomCorners.computeIfAbsent(corner.getMinX() / bucketSize, key -> Lists.newArrayList()).add(corner);
             }
         }
-        return n;
+        for (List<ColorBlock> bucket : rightCorners.values()) {
+            bucket.sort(Comparator.comparingInt(ColorBlock::getMinX));
+        }
+        for (List<ColorBlock> bucket : bottomCorners.values()) {
+            bucket.sort(Comparator.comparingInt(ColorBlock::getMinY));
+        }
+        List<ColorBlock> blankList = Lists.newArrayList();
+        for (ColorBlock corner : cornerList) {
+            if (!isLeftCorner(corner) || !isTopCorner(corner)) {
+                continue;
+            }
+            ColorBlock right = nearestCorner(rightCorners, corner.getMinY() / bucketSize, corner.getMaxX(),
+                    ColorBlock::getMinX, ColorBlock::getMinY, corner.getMinY(), corner.getHeight() / 2);
+            ColorBlock bottom = nearestCorner(bottomCorners, corner.getMinX() / bucketSize, corner.getMaxY(),
+                    ColorBlock::getMinY, ColorBlock::getMinX, corner.getMinX(), corner.getWidth() / 2);
+            if (right != null && bottom != null) {
+                blankList.add(new ColorBlock(corner.getRGB(), corner.getMinX(), corner.getMinY(), right.getMaxX(), bottom.getMaxY()));
+            }
+        }
+        return blankList;
     }
 
     /**
-     * 深度优先搜索，根据当前的地图，选择一个位置，枚举可以放置的颜色，标记后进入下一层
+     * 在key与相邻两个桶中，找along坐标大于after、across坐标与target相差不超过tolerance的角标中along坐标最小的一个
      *
-     * @param missionMap 当前层的MissionMap对象
-     * @param depth      当前层的搜索深度
+     * @param buckets   按across坐标分桶、桶内按along坐标排序的角标
+     * @param key       target所在的桶
+     * @param after     along坐标的下界（不含）
+     * @param along     查找方向上的坐标
+     * @param across    垂直于查找方向的坐标
+     * @param target    across坐标的期望值
+     * @param tolerance across坐标的最大偏差
+     * @return 最近的角标，没有时为null
      */
-    private void resolveMissionMap(MissionMap missionMap, int depth) {
-        if (depth >= totalBlanks) {
-            double deviation = evaluateMissionMap(missionMap);
-            if (bestDeviation < 1 || bestDeviation > deviation) {
-                bestDeviation = deviation;
-                bestMap = MissionMap.clone(missionMap);
+    private static ColorBlock nearestCorner(Map<Integer, List<ColorBlock>> buckets, int key, int after,
+                                            ToIntFunction<ColorBlock> along, ToIntFunction<ColorBlock> across, int target, int tolerance) {
+        ColorBlock nearest = null;
+        for (int k = key - 1; k <= key + 1; k++) {
+            List<ColorBlock> bucket = buckets.get(k);
+            if (bucket == null) {
+                continue;
             }
-            return;
-        }
-        MissionMap _missionMap = MissionMap.clone(missionMap);
-        int maxDegreeValue = -1;
-        MissionMap.Coordinate maxDegreePoint = new MissionMap.Coordinate(0, 0);
-        for (int x = 0; x < missionMap.getWidth(); x++) {
-            for (int y = 0; y < missionMap.getHeight(); y++) {
-                if (missionMap.getPoint(x, y).getType() == MissionMap.Type.BLANK) {
-                    int degree = degree(missionMap, x, y);
-                    if (degree > maxDegreeValue) {
-                        maxDegreeValue = degree;
-                        maxDegreePoint = new MissionMap.Coordinate(x, y);
-                    }
+            int low = 0, high = bucket.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (along.applyAsInt(bucket.get(middle)) > after) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
                 }
             }
-        }
-        int i = maxDegreePoint.getX();
-        int j = maxDegreePoint.getY();
-        Set<Integer> usedColorSet;
-        if (missionMap.getPoint(i, j).getType() == MissionMap.Type.BLANK) {
-            usedColorSet = Sets.newHashSet();
-            for (int k = 0; k < candidateColorList.size(); k++) {
-                if (!candidateColorUsed[k]) {
-                    ColorRGB candidateColor = candidateColorList.get(k);
-                    missionMap.setPoint(i, j, MissionMap.Type.FILLED, candidateColor);
-                    usedColorSet.add(k);
-                    candidateColorUsed[k] = true;
-                    MissionMap.Coordinate[] queue = new MissionMap.Coordinate[missionMap.getWidth() * missionMap.getHeight()];
-                    int n = 1, head = 0, tail = 1;
-                    queue[0] = new MissionMap.Coordinate(i, j);
-                    while (head < tail) {
-                        Set<MissionMap.Coordinate> expandSet = expand(missionMap, usedColorSet, queue[head].getX(), queue[head].getY());
-                        n += expandSet.size();
-                        for (MissionMap.Coordinate expandPoint : expandSet) {
-                            queue[tail++] = expandPoint;
-                        }
-                        head++;
-                    }
-                    resolveMissionMap(missionMap, depth + n);
-                    for (int c : usedColorSet) {
-                        candidateColorUsed[c] = false;
-                    }
-                    usedColorSet.clear();
-                    missionMap = MissionMap.clone(_missionMap);
+            for (int p = low; p < bucket.size(); p++) {
+                ColorBlock other = bucket.get(p);
+                if (nearest != null && along.applyAsInt(other) >= along.applyAsInt(nearest)) {
+                    break;
+                }
+                if (Math.abs(across.applyAsInt(other) - target) <= tolerance) {
+                    nearest = other;
+                    break;
                 }
             }
         }
+        return nearest;
     }
 
     /**
-     * 对当前放置好的MissionMap，进行偏离值的计算，包括每行每列
-     * 计算方法：
-     * 1. 取出顶端两个色块的sRGB
-     * 2. 根据两端差值和行列长度，计算中间每个色块期望的sRGB
-     * 3. 遍历中间每个色块的sRGB，计算期望与实际的偏离值
-     * 4. 所有偏离值加和返回
+     * 是否为空白格角标的灰色
      *
-     * @param missionMap 地图MissionMap
-     * @return 当前地图的颜色偏离值总计
+     * @param rgb 打包的sRGB
+     * @return 是否为空白格的颜色
      */
-    private double evaluateMissionMap(MissionMap missionMap) {
-        double deviation = 0;
-        for (int i = 0; i < missionMap.getWidth(); i++) {
-            for (int j = 0; j < missionMap.getHeight(); j++) {
-                if (missionMap.getPoint(i, j).getType() == MissionMap.Type.FILLED
-                        || missionMap.getPoint(i, j).getType() == MissionMap.Type.FIXED) {
-                    int x = j, y = j + 1;
-                    for (; y < missionMap.getHeight(); y++) {
-                        if (missionMap.getPoint(i, y).getType() == MissionMap.Type.NULL) {
-                            break;
-                        }
-                    }
-                    int l = y - x;
-                    double deltaR = 1.0 * (missionMap.getPoint(i, y - 1).getColor().getR() - missionMap.getPoint(i, x).getColor().getR()) / l;
-                    double deltaG = 1.0 * (missionMap.getPoint(i, y - 1).getColor().getG() - missionMap.getPoint(i, x).getColor().getG()) / l;
-                    double deltaB = 1.0 * (missionMap.getPoint(i, y - 1).getColor().getB() - missionMap.getPoint(i, x).getColor().getB()) / l;
-                    for (int k = x; k < y; k++) {
-                        double expectedR = missionMap.getPoint(i, x).getColor().getR() + (k - x) * deltaR;
-                        double expectedG = missionMap.getPoint(i, x).getColor().getG() + (k - x) * deltaG;
-                        double expectedB = missionMap.getPoint(i, x).getColor().getB() + (k - x) * deltaB;
-                        double actualR = missionMap.getPoint(i, k).getColor().getR();
-                        double actualG = missionMap.getPoint(i, k).getColor().getG();
-                        double actualB = missionMap.getPoint(i, k).getColor().getB();
-                        deviation = deviation + deviation(expectedR, expectedG, expectedB, actualR, actualG, actualB);
-                    }
-                    j = y;
-                }
-            }
-        }
-        for (int j = 0; j < missionMap.getHeight(); j++) {
-            for (int i = 0; i < missionMap.getWidth(); i++) {
-                if (missionMap.getPoint(i, j).getType() == MissionMap.Type.FILLED
-                        || missionMap.getPoint(i, j).getType() == MissionMap.Type.FIXED) {
-                    int x = i, y = i + 1;
-                    for (; y < missionMap.getWidth(); y++) {
-                        if (missionMap.getPoint(y, j).getType() == MissionMap.Type.NULL) {
-                            break;
-                        }
-                    }
-                    int l = y - x;
-                    double deltaR = 1.0 * (missionMap.getPoint(y - 1, j).getColor().getR() - missionMap.getPoint(x, j).getColor().getR()) / l;
-                    double deltaG = 1.0 * (missionMap.getPoint(y - 1, j).getColor().getG() - missionMap.getPoint(x, j).getColor().getG()) / l;
-                    double deltaB = 1.0 * (missionMap.getPoint(y - 1, j).getColor().getB() - missionMap.getPoint(x, j).getColor().getB()) / l;
-                    for (int k = x; k < y; k++) {
-                        double expectedR = missionMap.getPoint(x, j).getColor().getR() + (k - x) * deltaR;
-                        double expectedG = missionMap.getPoint(x, j).getColor().getG() + (k - x) * deltaG;
-                        double expectedB = missionMap.getPoint(x, j).getColor().getB() + (k - x) * deltaB;
-                        double actualR = missionMap.getPoint(k, j).getColor().getR();
-                        double actualG = missionMap.getPoint(k, j).getColor().getG();
-                        double actualB = missionMap.getPoint(k, j).getColor().getB();
-                        deviation = deviation + deviation(expectedR, expectedG, expectedB, actualR, actualG, actualB);
-                    }
-                    i = y;
-                }
-            }
-        }
-        return deviation;
+    private boolean isBlankColor(int rgb) {
+        return ImageRGB.isGrey(rgb) && deviation(rgb, GREY.getRGB()) <= GREY_DEVIATION;
     }
 
-    public static void main(String[] args) {
-        new Blendoku();
+    private boolean isLeftCorner(ColorBlock corner) {
+        return corner.getCentroidX() < (corner.getMinX() + corner.getMaxX()) / 2.0;
+    }
+
+    private boolean isTopCorner(ColorBlock corner) {
+        return corner.getCentroidY() < (corner.getMinY() + corner.getMaxY()) / 2.0;
     }
 
     /**
-     * 对(i, j)位置的行列进行扩展
+     * 将一维坐标聚类，相邻坐标之差不超过tolerance的归为一类
      *
-     * @param missionMap   地图MissionMap
-     * @param usedColorSet 使用的颜色集合，用于回溯时还原候选颜色列表
-     * @param i            横向坐标i
-     * @param j            纵向坐标
-     * @return 推导扩展出的一系列位置坐标
+     * @param values    坐标
+     * @param tolerance 同一类内相邻坐标的最大间距
+     * @return 每一类的平均坐标，从小到大
      */
-    private Set<MissionMap.Coordinate> expand(MissionMap missionMap, Set<Integer> usedColorSet, int i, int j) {
-        Set<MissionMap.Coordinate> expandSet = Sets.newHashSet();
-        int left = bound(missionMap, i, j, -1, 0, false).getX();
-        int right = bound(missionMap, i, j, 1, 0, false).getX();
-        int top = bound(missionMap, i, j, 0, -1, false).getY();
-        int bottom = bound(missionMap, i, j, 0, 1, false).getY();
-        if (right - left > 0) {
-            double deltaR = 1.0 * (missionMap.getPoint(right, j).getColor().getR() - missionMap.getPoint(left, j).getColor().getR()) / (right - left);
-            double deltaG = 1.0 * (missionMap.getPoint(right, j).getColor().getG() - missionMap.getPoint(left, j).getColor().getG()) / (right - left);
-            double deltaB = 1.0 * (missionMap.getPoint(right, j).getColor().getB() - missionMap.getPoint(left, j).getColor().getB()) / (right - left);
-            int u = bound(missionMap, i, j, -1, 0, true).getX();
-            int v = bound(missionMap, i, j, 1, 0, true).getX();
-            for (int l = u; l <= v; l++) {
-                if (missionMap.getPoint(l, j).getType() == MissionMap.Type.BLANK) {
-                    double expectedR = missionMap.getPoint(left, j).getColor().getR() + (l - left) * deltaR;
-                    double expectedG = missionMap.getPoint(left, j).getColor().getG() + (l - left) * deltaG;
-                    double expectedB = missionMap.getPoint(left, j).getColor().getB() + (l - left) * deltaB;
-                    double minimalDeviation = MAX_SINGLE_LOSS;
-                    int minimalColor = -1;
-                    for (int c = 0; c < candidateColorList.size(); c++) {
-                        if (!candidateColorUsed[c]) {
-                            ColorRGB _candidateColor = candidateColorList.get(c);
-                            if (deviation(expectedR, expectedG, expectedB, _candidateColor.getR(), _candidateColor.getG(), _candidateColor.getB()) < minimalDeviation) {
-                                minimalDeviation = deviation(expectedR, expectedG, expectedB, _candidateColor.getR(), _candidateColor.getG(), _candidateColor.getB());
-                                minimalColor = c;
-                            }
-                        }
-                    }
-                    expandSet.add(new MissionMap.Coordinate(l, j));
-                    usedColorSet.add(minimalColor);
-                    candidateColorUsed[minimalColor] = true;
-                    missionMap.setPoint(l, j, MissionMap.Type.FILLED, candidateColorList.get(minimalColor));
-                }
-            }
-        }
-        if (bottom - top > 0) {
-            double deltaR = 1.0 * (missionMap.getPoint(i, bottom).getColor().getR() - missionMap.getPoint(i, top).getColor().getR()) / (bottom - top);
-            double deltaG = 1.0 * (missionMap.getPoint(i, bottom).getColor().getG() - missionMap.getPoint(i, top).getColor().getG()) / (bottom - top);
-            double deltaB = 1.0 * (missionMap.getPoint(i, bottom).getColor().getB() - missionMap.getPoint(i, top).getColor().getB()) / (bottom - top);
-            int u = bound(missionMap, i, j, 0, -1, true).getY();
-            int v = bound(missionMap, i, j, 0, 1, true).getY();
-            for (int l = u; l <= v; l++) {
-                if (missionMap.getPoint(i, l).getType() == MissionMap.Type.BLANK) {
-                    double expectedR = missionMap.getPoint(i, top).getColor().getR() + (l - top) * deltaR;
-                    double expectedG = missionMap.getPoint(i, top).getColor().getG() + (l - top) * deltaG;
-                    double expectedB = missionMap.getPoint(i, top).getColor().getB() + (l - top) * deltaB;
-                    double minimalDeviation = MAX_SINGLE_LOSS;
-                    int minimalColor = -1;
-                    for (int c = 0; c < candidateColorList.size(); c++) {
-                        if (!candidateColorUsed[c]) {
-                            ColorRGB _candidateColor = candidateColorList.get(c);
-                            if (deviation(expectedR, expectedG, expectedB, _candidateColor.getR(), _candidateColor.getG(), _candidateColor.getB()) < minimalDeviation) {
-                                minimalDeviation = deviation(expectedR, expectedG, expectedB, _candidateColor.getR(), _candidateColor.getG(), _candidateColor.getB());
-                                minimalColor = c;
-                            }
-                        }
-                    }
-                    expandSet.add(new MissionMap.Coordinate(i, l));
-                    usedColorSet.add(minimalColor);
-                    candidateColorUsed[minimalColor] = true;
-                    missionMap.setPoint(i, l, MissionMap.Type.FILLED, candidateColorList.get(minimalColor));
+    private double[] clusterCenter(double[] values, double tolerance) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double[] centers = new double[sorted.length];
+        int n = 0, start = 0;
+        for (int k = 1; k <= sorted.length; k++) {
+            if (k == sorted.length || sorted[k] - sorted[k - 1] > tolerance) {
+                double sum = 0;
+                for (int l = start; l < k; l++) {
+                    sum += sorted[l];
                 }
+                centers[n++] = sum / (k - start);
+                start = k;
             }
         }
-        return expandSet;
+        return Arrays.copyOf(centers, n);
     }
 
     /**
-     * 以(x, y)位置，以(directionX, directionY)为方向，计算边界坐标
-     * 边界的定义：
-     * 1. 若方格为NULL，则一定为边界
-     * 2. 若blank为true，则遇到BLANK也为边界；否则边界一定为FILLED或FIXED
+     * 相邻两类之间的最小间距，即网格的行列间距；只有一类时为无穷大
      *
-     * @param missionMap 地图MissionMap
-     * @param x          中心点横向坐标
-     * @param y          中心点纵向坐标
-     * @param directionX 横向方向
-     * @param directionY 纵向方向
-     * @param blank      是否允许BLANK为边界
-     * @return 边界坐标
+     * @param centers 从小到大的类中心
+     * @return 最小间距
      */
-    private MissionMap.Coordinate bound(MissionMap missionMap, int x, int y, int directionX, int directionY, boolean blank) {
-        MissionMap.Coordinate bound = new MissionMap.Coordinate(x, y);
-        for (int k = 1; x + k * directionX >= 0 && x + k * directionX < missionMap.getWidth()
-                && y + k * directionY >= 0 && y + k * directionY < missionMap.getHeight(); k++) {
-            if (missionMap.getPoint(x + k * directionX, y + k * directionY).getType() == MissionMap.Type.FILLED
-                    || missionMap.getPoint(x + k * directionX, y + k * directionY).getType() == MissionMap.Type.FIXED) {
-                bound = new MissionMap.Coordinate(x + k * directionX, y + k * directionY);
-            } else if (missionMap.getPoint(x + k * directionX, y + k * directionY).getType() == MissionMap.Type.NULL) {
-                break;
-            } else if (blank) {
-                bound = new MissionMap.Coordinate(x + k * directionX, y + k * directionY);
-            }
+    private double minimalGap(double[] centers) {
+        double gap = Double.POSITIVE_INFINITY;
+        for (int k = 1; k < centers.length; k++) {
+            gap = Math.min(gap, centers[k] - centers[k - 1]);
         }
-        return bound;
+        return gap;
     }
 
-    /**
-     * 计算(x, y)位置的度，若上下左右不为空，+10；若其中包含了FIXED或FILLED，+1
-     *
-     * @param missionMap 地图MissionMap
-     * @param x          横向坐标
-     * @param y          纵向坐标
-     * @return 该位置的度，越大优先级越高
-     */
-    private int degree(MissionMap missionMap, int x, int y) {
-        int[] deltaX = {-1, 1, 0, 0};
-        int[] deltaY = {0, 0, -1, 1};
-        int degree = 0;
-        for (int k = 0; k < deltaX.length; k++) {
-            if (missionMap.getPoint(x + deltaX[k], y + deltaY[k]).getType() != MissionMap.Type.NULL) {
-                degree += 10;
-            }
-            if (missionMap.getPoint(x + deltaX[k], y + deltaY[k]).getType() == MissionMap.Type.FIXED
-                    || missionMap.getPoint(x + deltaX[k], y + deltaY[k]).getType() == MissionMap.Type.FILLED) {
-                degree += 1;
-            }
-        }
-        return degree;
+    private int gridIndex(double center, double origin, double pitch) {
+        return Double.isInfinite(pitch) ? 0 : (int) Math.round((center - origin) / pitch);
     }
 
-    /**
-     * 两个颜色的偏离值，欧式距离
-     *
-     * @param r1 第一个颜色的R
-     * @param g1 第一个颜色的G
-     * @param b1 第一个颜色的B
-     * @param r2 第二个颜色的R
-     * @param g2 第二个颜色的G
-     * @param b2 第二个颜色的B
-     * @return 偏离值
-     */
-    private double deviation(double r1, double g1, double b1, double r2, double g2, double b2) {
-        return (r1 - r2) * (r1 - r2) + (g1 - g2) * (g1 - g2) + (b1 - b2) * (b1 - b2);
+    public static void main(String[] args) {
+        Blendoku blendoku = new Blendoku(IMAGE_FILENAME);
+        blendoku.getMissionMap().print();
+        SearchResult result = blendoku.resolve(SolverOptions.defaults().newBudget(), (deviation, missionMap) -> System.out.println("improved: " + deviation));
+        System.out.println("exhausted: " + result.isExhausted());
+        if (result.getMissionMap() != null) {
+            result.getMissionMap().print();
+        }
     }
 
     /**
      * 两个颜色的偏离值，欧式距离
      *
-     * @param c1 第一个颜色
-     * @param c2 第二个颜色
+     * @param rgb1 第一个颜色，打包的sRGB
+     * @param rgb2 第二个颜色，打包的sRGB
      * @return 偏离值
      */
-    private double deviation(ColorRGB c1, ColorRGB c2) {
-        return deviation(c1.getR(), c1.getG(), c1.getB(), c2.getR(), c2.getG(), c2.getB());
+    private int deviation(int rgb1, int rgb2) {
+        int dr = ImageRGB.r(rgb1) - ImageRGB.r(rgb2);
+        int dg = ImageRGB.g(rgb1) - ImageRGB.g(rgb2);
+        int db = ImageRGB.b(rgb1) - ImageRGB.b(rgb2);
+        return dr * dr + dg * dg + db * db;
     }
 
     /**
      * 在ImageRGB中的给定区域内，抽取色块
+     * 一次扫描，对非背景像素按同色4连通做洪泛填充，每个像素只访问一次；
+     * 连通块中只要有一个像素满足成簇检查（左leftX，右rightX，上topY，下bottomY），该连通块就是一个色块
      *
      * @param imageRGB ImageRGB对象
      * @param x1       横向坐标左边界
      * @param x2       横向坐标右边界
      * @param y1       纵向坐标上边界
      * @param y2       纵向坐标下边界
-     * @return 色块sRGB列表
+     * @param leftX    成簇检查的左offset
+     * @param rightX   成簇检查的右offset
+     * @param topY     成簇检查的上offset
+     * @param bottomY  成簇检查的下offset
+     * @return 色块列表，按色块内第一个成簇像素的列优先顺序排列
+     */
+    List<ColorBlock> fetchColorBlock(ImageRGB imageRGB, int x1, int x2, int y1, int y2,
+                                     int leftX, int rightX, int topY, int bottomY) {
+        return fetchColorBlock(imageRGB, x1, x2, y1, y2, leftX, rightX, topY, bottomY, null);
+    }
+
+    /**
+     * 同fetchColorBlock，cornerList不为null时，同一次扫描中还把满足空白格角标成簇检查（正负BLANK_CORNER_CHECK_BOUND）的
+     * 灰色连通块放入cornerList，角标的线宽太细，通过不了色块的成簇检查
+     *
+     * @param cornerList 输出的空白格角标，为null时不提取
      */
-    private List<ColorRGB> fetchColorBlock(ImageRGB imageRGB, int x1, int x2, int y1, int y2) {
-        List<ColorRGB> colorList = Lists.newArrayList();
-        for (int i = x1; i < x2; i++) {
-            for (int j = y1; j < y2; j++) {
-                if (!imageRGB.getColor(i, j).equals(BLACK) && !colorList.contains(imageRGB.getColor(i, j))) {
-                    if (checkColorCluster(imageRGB, i, j, COLOR_BLOCK_CHECK_BOUND)) {
-                        colorList.add(imageRGB.getColor(i, j));
+    private List<ColorBlock> fetchColorBlock(ImageRGB imageRGB, int x1, int x2, int y1, int y2,
+                                             int leftX, int rightX, int topY, int bottomY, List<ColorBlock> cornerList) {
+        List<ColorBlock> blockList = Lists.newArrayList();
+        int regionWidth = x2 - x1;
+        int regionSize = regionWidth * (y2 - y1);
+        boolean[] visited = arena != null ? arena.visited(regionSize) : new boolean[regionSize];
+        int[] stack = arena != null ? arena.stack(regionSize) : new int[regionSize];
+        for (int j = y1; j < y2; j++) {
+            for (int i = x1; i < x2; i++) {
+                int start = (j - y1) * regionWidth + (i - x1);
+                if (visited[start]) {
+                    continue;
+                }
+                visited[start] = true;
+                int rgb = imageRGB.rgbAt(i, j);
+                if (deviation(BLACK.getRGB(), rgb) <= BACKGROUND_DEVIATION) {
+                    continue;
+                }
+                int minX = i, minY = j, maxX = i, maxY = j, pixelCount = 0;
+                long sumX = 0, sumY = 0;
+                int anchorX = -1, anchorY = -1;
+                // 灰色连通块中第一个满足角标成簇检查的像素，不是灰色或不提取角标时不检查
+                boolean checkCorner = cornerList != null && isBlankColor(rgb);
+                int cornerX = -1, cornerY = -1;
+                int top = 0;
+                stack[top++] = start;
+                while (top > 0) {
+                    int p = stack[--top];
+                    int x = x1 + p % regionWidth;
+                    int y = y1 + p / regionWidth;
+                    pixelCount++;
+                    sumX += x;
+                    sumY += y;
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                    if ((anchorX < 0 || x < anchorX || (x == anchorX && y < anchorY))
+                            && checkColorCluster(imageRGB, x, y, leftX, rightX, topY, bottomY)) {
+                        anchorX = x;
+                        anchorY = y;
+                    }
+                    if (checkCorner && cornerX < 0 && checkColorCluster(imageRGB, x, y,
+                            BLANK_CORNER_CHECK_BOUND, BLANK_CORNER_CHECK_BOUND, BLANK_CORNER_CHECK_BOUND, BLANK_CORNER_CHECK_BOUND)) {
+                        cornerX = x;
+                        cornerY = y;
+                    }
+                    if (x > x1 && !visited[p - 1] && imageRGB.rgbAt(x - 1, y) == rgb) {
+                        visited[p - 1] = true;
+                        stack[top++] = p - 1;
+                    }
+                    if (x < x2 - 1 && !visited[p + 1] && imageRGB.rgbAt(x + 1, y) == rgb) {
+                        visited[p + 1] = true;
+                        stack[top++] = p + 1;
                     }
+                    if (y > y1 && !visited[p - regionWidth] && imageRGB.rgbAt(x, y - 1) == rgb) {
+                        visited[p - regionWidth] = true;
+                        stack[top++] = p - regionWidth;
+                    }
+                    if (y < y2 - 1 && !visited[p + regionWidth] && imageRGB.rgbAt(x, y + 1) == rgb) {
+                        visited[p + regionWidth] = true;
+                        stack[top++] = p + regionWidth;
+                    }
+                }
+                if (anchorX >= 0) {
+                    blockList.add(new ColorBlock(rgb, minX, minY, maxX, maxY, pixelCount, sumX, sumY, anchorX, anchorY));
+                }
+                if (cornerX >= 0) {
+                    cornerList.add(new ColorBlock(rgb, minX, minY, maxX, maxY, pixelCount, sumX, sumY, cornerX, cornerY));
                 }
             }
         }
-        return colorList;
+        blockList.sort(Comparator.comparingInt(ColorBlock::getAnchorX).thenComparingInt(ColorBlock::getAnchorY));
+        return blockList;
     }
 
     /**
-     * 检查以(x, y)为中心，size大小内，颜色是否成簇
+     * 检查以(x, y)为中心，size大小内，颜色是否成簇，借助ColorClusterIndex在O(1)时间内完成
      *
      * @param imageRGB ImageRGB对象
      * @param x        横向坐标
@@ -568,24 +499,16 @@ public class Blendoku {
      * @param size     簇大小，正负size
      * @return 是否成簇
      */
-    private boolean checkColorCluster(ImageRGB imageRGB, int x, int y, int size) {
-        ColorRGB centerColor = imageRGB.getColor(x, y);
-        if (deviation(BLACK.getR(), BLACK.getG(), BLACK.getB(), centerColor.getR(), centerColor.getG(), centerColor.getB()) <= BACKGROUND_DEVIATION) {
+    boolean checkColorCluster(ImageRGB imageRGB, int x, int y, int size) {
+        int centerColor = imageRGB.rgbAt(x, y);
+        if (deviation(BLACK.getRGB(), centerColor) <= BACKGROUND_DEVIATION) {
             return false;
         }
-        for (int i = -size; i <= size; i++) {
-            for (int j = -size; j <= size; j++) {
-                if (x + i < 0 || x + i > imageRGB.getWidth() || y + j < 0 || y + j > imageRGB.getHeight()
-                        || !imageRGB.getColor(x + i, y + j).equals(centerColor)) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return imageRGB.getClusterIndex().isCluster(x - size, y - size, x + size, y + size);
     }
 
     /**
-     * 检查以(x, y)为中心，左leftX，右rightX，上topY，下bottomY内，颜色是否成簇
+     * 检查以(x, y)为中心，左leftX，右rightX，上topY，下bottomY内，颜色是否成簇，借助ColorClusterIndex在O(1)时间内完成
      *
      * @param imageRGB ImageRGB对象
      * @param x        横向坐标
@@ -596,23 +519,11 @@ public class Blendoku {
      * @param bottomY  下offset
      * @return 是否成簇
      */
-    private boolean checkColorCluster(ImageRGB imageRGB, int x, int y, int leftX, int rightX, int topY, int bottomY) {
-        ColorRGB centerColor = imageRGB.getColor(x, y);
-        if (deviation(BLACK.getR(), BLACK.getG(), BLACK.getB(), centerColor.getR(), centerColor.getG(), centerColor.getB()) <= BACKGROUND_DEVIATION) {
+    boolean checkColorCluster(ImageRGB imageRGB, int x, int y, int leftX, int rightX, int topY, int bottomY) {
+        int centerColor = imageRGB.rgbAt(x, y);
+        if (deviation(BLACK.getRGB(), centerColor) <= BACKGROUND_DEVIATION) {
             return false;
         }
-        boolean flag = true;
-        for (int i = x - leftX; i <= x + rightX; i++) {
-            for (int j = y - topY; j <= y + bottomY; j++) {
-                if (!imageRGB.getColor(i, j).equals(centerColor)) {
-                    flag = false;
-                    break;
-                }
-            }
-            if (!flag) {
-                break;
-            }
-        }
-        return flag;
+        return imageRGB.getClusterIndex().isCluster(x - leftX, y - topY, x + rightX, y + bottomY);
     }
 }
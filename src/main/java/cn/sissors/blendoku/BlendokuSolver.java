@@ -0,0 +1,163 @@
+package cn.sissors.blendoku;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 可复用、线程安全的求解入口：parse把截图解析为Puzzle，solve在给定配置下搜索Puzzle的最优解
+ * <p>
+ * 一个BlendokuSolver可以在多个线程中同时使用，也可以在长期运行的进程中反复使用。
+ * 每个线程有自己的SolverArena，像素数组、成簇检查的前缀和表、洪泛填充的标记与栈、置换表与搜索状态都从中取出，
+ * 因此同一线程连续解析与求解时，预热之后几乎不再分配大块内存。
+ * 返回的Puzzle与SearchResult不引用SolverArena，可以在其他线程中使用或长期保存。
+ * 每次解析与搜索结束时，各阶段的耗时与搜索计数记录到SolverStats（JMX）并提交JFR事件，见SolverEvents。
+ * 并行搜索使用的线程池按线程数在第一次使用时创建，之后由同一个BlendokuSolver的所有求解共用，close()时关闭。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class BlendokuSolver implements AutoCloseable {
+    // 并行搜索时拆分为独立任务的层数
+    private final static int PARALLEL_SPLIT_DEPTH = 2;
+    // open表每个节点大约占用的字节数
+    private final static int OPEN_NODE_BYTES = 64;
+
+    private final ThreadLocal<SolverArena> arenas = ThreadLocal.withInitial(SolverArena::new);
+    // 按线程数创建的线程池，受this保护
+    private final Map<Integer, ForkJoinPool> pools = new TreeMap<>();
+    private boolean closed;
+
+    /**
+     * 解析已经读入的截图
+     *
+     * @param image 截图
+     * @return 截图中的关卡，没有名称与埋入的解
+     */
+    public Puzzle parse(BufferedImage image) {
+        return parse(image, System.nanoTime());
+    }
+
+    /**
+     * 解码并解析截图文件的内容
+     *
+     * @param data 截图文件的内容，格式为ImageIO支持的格式
+     * @return 截图中的关卡，没有名称与埋入的解
+     */
+    public Puzzle parse(byte[] data) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+        if (image == null) {
+            throw new IOException("unsupported image format");
+        }
+        return parse(image, start);
+    }
+
+    /**
+     * 解析截图，并把各阶段的耗时记录到SolverStats与JFR事件
+     *
+     * @param image 截图
+     * @param start 开始解码的时间，System.nanoTime()
+     */
+    private Puzzle parse(BufferedImage image, long start) {
+        SolverArena arena = arenas.get();
+        ImageRGB imageRGB = ImageRGB.of(image, arena);
+        long decode = System.nanoTime() - start;
+        Blendoku blendoku = new Blendoku(imageRGB, arena);
+        Puzzle puzzle = new Puzzle(blendoku.getMissionMap(), blendoku.getCandidateColors());
+        SolverStats.recordParse(decode, blendoku.getSegmentationNanos(), blendoku.getGridDetectionNanos());
+        SolverEvents.parsed(decode, blendoku.getSegmentationNanos(), blendoku.getGridDetectionNanos(), puzzle);
+        return puzzle;
+    }
+
+    /**
+     * 按options中的时间预算求解，见solve(Puzzle, SolverOptions, SearchBudget)
+     */
+    public SearchResult solve(Puzzle puzzle, SolverOptions options) {
+        return solve(puzzle, options, options.newBudget());
+    }
+
+    /**
+     * 在时间预算内搜索，每找到一个更优解就通过options中的listener发布；预算用完时返回目前的最优解
+     * Puzzle不会被修改，可以多次求解
+     *
+     * @param puzzle  关卡
+     * @param options 搜索方式与参数
+     * @param budget  时间预算与取消标记
+     * @return 搜索结果，isExhausted()表示搜索空间是否已经穷尽
+     */
+    public SearchResult solve(Puzzle puzzle, SolverOptions options, SearchBudget budget) {
+        long start = System.nanoTime();
+        PrintStream log = options.getLog();
+        Incumbent incumbent = new Incumbent();
+        incumbent.setListener(options.getListener());
+        SolverArena arena = arenas.get();
+        TranspositionTable transpositionTable = arena.transpositionTable(options.getTranspositionTableMegabytes());
+        CandidateIndex candidateIndex = arena.candidateIndex(puzzle.getCandidateColors(), options.getCandidateEquivalenceDeviation());
+        if (log != null) {
+            log.println("candidates: " + candidateIndex.size() + ", equivalence classes: " + candidateIndex.getClassCount());
+        }
+        MissionSearch missionSearch = new MissionSearch(arena.missionMap(puzzle.getMissionMap()), candidateIndex, incumbent, transpositionTable, budget, arena);
+        int n = missionSearch.expandMissionMap();
+        String mode = options.getSearchMode();
+        int parallelism = options.getParallelism();
+        // 近似相同的色块视为可以互换时，对称剪枝可能剪掉最优解
+        boolean exhaustive = !"anneal".equals(mode) && options.getCandidateEquivalenceDeviation() <= 0;
+        if ("anneal".equals(mode)) {
+            if (missionSearch.resolveGreedy(n)) {
+                double greedy = incumbent.getDeviation();
+                long millis = options.getTimeoutMillis() > 0 ? options.getTimeoutMillis() : options.getAnnealMillis();
+                long moves = LocalSearch.anneal(incumbent.getMissionMap(), candidateIndex, pool(parallelism), millis, budget, incumbent);
+                if (log != null) {
+                    log.println("greedy deviation: " + greedy + ", annealing moves: " + moves);
+                }
+            }
+        } else if ("beam".equals(mode)) {
+            exhaustive &= missionSearch.resolveBeam(n, options.getBeamWidth(), parallelism > 1 ? pool(parallelism) : null);
+        } else if ("astar".equals(mode)) {
+            missionSearch.resolveBestFirst(n, (int) Math.min(Integer.MAX_VALUE, (long) options.getOpenListMegabytes() * 1024 * 1024 / OPEN_NODE_BYTES));
+        } else if (parallelism > 1) {
+            missionSearch.resolveMissionMap(n, pool(parallelism), PARALLEL_SPLIT_DEPTH);
+        } else {
+            missionSearch.resolveMissionMap(n);
+        }
+        SolverMetrics metrics = SolverMetrics.of(missionSearch, incumbent, System.nanoTime() - start);
+        if (log != null) {
+            log.println(metrics + ", deviation: " + incumbent.getDeviation());
+        }
+        // 局部搜索、截断过的束搜索与近似等价类都不能穷尽搜索空间
+        SearchResult result = new SearchResult(incumbent.getMissionMap(), incumbent.getDeviation(), exhaustive && !budget.isInterrupted(), metrics);
+        SolverStats.recordSearch(metrics);
+        SolverEvents.searched(mode, result);
+        return result;
+    }
+
+    /**
+     * @param parallelism 线程数
+     * @return 这个线程数的线程池，第一次使用时创建
+     * @throws IllegalStateException 已经close()
+     */
+    private synchronized ForkJoinPool pool(int parallelism) {
+        if (closed) {
+            throw new IllegalStateException("solver is closed");
+        }
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    /**
+     * 关闭并行搜索的线程池，正在进行的搜索会继续完成；之后不能再进行并行搜索、束搜索与局部搜索，解析与串行搜索不受影响
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (ForkJoinPool pool : pools.values()) {
+            pool.shutdown();
+        }
+        pools.clear();
+    }
+}
@@ -0,0 +1,318 @@
+package cn.sissors.blendoku;
+
+import java.util.Arrays;
+
+/**
+ * 候选色块的最近颜色索引，查询与期望颜色偏离值最小的未使用候选色块
+ * <p>
+ * 候选色块按分布最广的一个颜色分量排序，查询时从期望颜色的投影位置向两侧交替扩展；
+ * 投影距离的平方已经不小于当前最小偏离值时，更远的色块不可能更近，停止扩展。
+ * 未使用的候选色块记录在long[]位集中，使用与释放都是O(1)；偏离值相同时返回下标最小的候选色块，与逐个扫描的结果一致。
+ * <p>
+ * 两两之间偏离值都不超过equivalenceDeviation的候选色块归为同一等价类（完全连接，不取传递闭包），视为可以互换：
+ * 搜索时每个格子对每个等价类只尝试其中下标最小的未使用色块，其余放置方式只是同类色块互换了位置。
+ * 颜色完全相同的色块互换不改变偏离值，阈值为0时对称剪枝不会丢失最优解；
+ * 阈值大于0时，近似相同的色块互换带来的偏离值差异被忽略，结果不再保证最优。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class CandidateIndex {
+    private int[] colors;
+    private int size;
+    // 排序所用的颜色分量，16为R，8为G，0为B
+    private int shift;
+    // 排序后第p个位置的候选色块下标
+    private int[] order;
+    // 排序后第p个位置的颜色分量
+    private int[] keys;
+    // 同一等价类中下标小于c的最大下标，没有时为-1
+    private int[] twins;
+    private int classCount;
+    // 未使用的候选色块位集，第c个候选色块对应free[c >>> 6]的第(c & 63)位，只有前wordCount个有效
+    private long[] free;
+    private int wordCount;
+    // sortFree的临时数组
+    private double[] distances;
+    // reset划分等价类的临时数组
+    private int[] last;
+
+    /**
+     * @param colors               候选色块的sRGB
+     * @param equivalenceDeviation 视为可以互换的最大偏离值，0表示只合并颜色完全相同的色块
+     */
+    public CandidateIndex(int[] colors, double equivalenceDeviation) {
+        this.order = new int[0];
+        this.keys = new int[0];
+        this.twins = new int[0];
+        this.free = new long[0];
+        this.distances = new double[0];
+        this.last = new int[0];
+        reset(colors, equivalenceDeviation);
+    }
+
+    /**
+     * 改为另一组候选色块重新建立索引，所有色块都未使用；数组不够大时才重新分配，用于SolverArena复用同一个索引
+     *
+     * @param colors               候选色块的sRGB，不超过2^23个
+     * @param equivalenceDeviation 视为可以互换的最大偏离值，0表示只合并颜色完全相同的色块
+     */
+    public void reset(int[] colors, double equivalenceDeviation) {
+        this.colors = colors;
+        this.size = colors.length;
+        this.wordCount = (size + 63) >>> 6;
+        if (order.length < size) {
+            this.order = new int[size];
+            this.keys = new int[size];
+            this.twins = new int[size];
+            this.distances = new double[size];
+            this.last = new int[size];
+        }
+        if (free.length < wordCount) {
+            this.free = new long[wordCount];
+        }
+        this.shift = widestChannel(colors);
+        // 颜色分量放在第23~30位、下标放在低23位一起排序（不占用符号位），颜色分量相同时下标小的在前
+        for (int c = 0; c < size; c++) {
+            order[c] = channel(colors[c]) << 23 | c;
+        }
+        Arrays.sort(order, 0, size);
+        for (int p = 0; p < size; p++) {
+            keys[p] = order[p] >>> 23;
+            order[p] &= 0x7FFFFF;
+        }
+        Arrays.fill(free, 0, wordCount, 0);
+        for (int c = 0; c < size; c++) {
+            release(c);
+        }
+        // 按下标依次加入第一个所有成员都与之足够接近的等价类，没有时新建一类；last[k]为第k类中下标最大的色块
+        int classes = 0;
+        for (int c = 0; c < size; c++) {
+            int k = 0;
+            while (k < classes && !isClose(colors, last[k], c, equivalenceDeviation)) {
+                k++;
+            }
+            twins[c] = k < classes ? last[k] : -1;
+            last[k] = c;
+            classes = Math.max(classes, k + 1);
+        }
+        this.classCount = classes;
+    }
+
+    /**
+     * @return 从member开始沿twins链的每个色块与c的偏离值是否都不超过equivalenceDeviation
+     */
+    private boolean isClose(int[] colors, int member, int c, double equivalenceDeviation) {
+        for (int d = member; d >= 0; d = twins[d]) {
+            if (deviation(colors[c], colors[d]) > equivalenceDeviation) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CandidateIndex(CandidateIndex other) {
+        this.colors = other.colors;
+        this.size = other.size;
+        this.shift = other.shift;
+        this.order = other.order;
+        this.keys = other.keys;
+        this.twins = other.twins;
+        this.classCount = other.classCount;
+        this.free = Arrays.copyOf(other.free, other.wordCount);
+        this.wordCount = other.wordCount;
+        this.distances = new double[size];
+    }
+
+    /**
+     * 复制一份CandidateIndex，排序结构共享，使用情况各自独立；other之后不能再reset
+     */
+    public static CandidateIndex clone(CandidateIndex other) {
+        return new CandidateIndex(other);
+    }
+
+    /**
+     * @return R、G、B中取值范围最大的分量对应的位移
+     */
+    private static int widestChannel(int[] colors) {
+        int bestShift = 16, bestRange = -1;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int min = 255, max = 0;
+            for (int rgb : colors) {
+                min = Math.min(min, (rgb >> shift) & 0xFF);
+                max = Math.max(max, (rgb >> shift) & 0xFF);
+            }
+            if (max - min > bestRange) {
+                bestRange = max - min;
+                bestShift = shift;
+            }
+        }
+        return bestShift;
+    }
+
+    private int channel(int rgb) {
+        return (rgb >> shift) & 0xFF;
+    }
+
+    public void use(int c) {
+        free[c >>> 6] &= ~(1L << c);
+    }
+
+    public void release(int c) {
+        free[c >>> 6] |= 1L << c;
+    }
+
+    public boolean isUsed(int c) {
+        return (free[c >>> 6] & (1L << c)) == 0;
+    }
+
+    /**
+     * 位集的长度，配合getFreeWord与Long.numberOfTrailingZeros按下标升序枚举未使用的候选色块
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * @param w 位集中的第w个long
+     * @return 下标在[64w, 64w + 63]内的未使用候选色块
+     */
+    public long getFreeWord(int w) {
+        return free[w];
+    }
+
+    /**
+     * @param c 候选色块下标
+     * @return c是否是其等价类中下标最小的未使用色块，只有这样的色块需要在一个格子上尝试
+     */
+    public boolean isRepresentative(int c) {
+        for (int d = twins[c]; d >= 0; d = twins[d]) {
+            if (!isUsed(d)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public int getColor(int c) {
+        return colors[c];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 查询与期望颜色偏离值最小的未使用候选色块
+     *
+     * @param r 期望颜色的R
+     * @param g 期望颜色的G
+     * @param b 期望颜色的B
+     * @return 候选色块下标，全部已使用时为-1
+     */
+    public int nearest(double r, double g, double b) {
+        double key = shift == 16 ? r : shift == 8 ? g : b;
+        int hi = lowerBound(key);
+        int lo = hi - 1;
+        int minimalColor = -1;
+        double minimalDeviation = Double.POSITIVE_INFINITY;
+        while (lo >= 0 || hi < size) {
+            double distanceLo = lo >= 0 ? key - keys[lo] : Double.POSITIVE_INFINITY;
+            double distanceHi = hi < size ? keys[hi] - key : Double.POSITIVE_INFINITY;
+            double distance = Math.min(distanceLo, distanceHi);
+            if (distance * distance > minimalDeviation) {
+                break;
+            }
+            int c = distanceLo <= distanceHi ? order[lo--] : order[hi++];
+            if (isUsed(c)) {
+                continue;
+            }
+            double deviation = deviation(r, g, b, ImageRGB.r(colors[c]), ImageRGB.g(colors[c]), ImageRGB.b(colors[c]));
+            if (deviation < minimalDeviation || (deviation == minimalDeviation && c < minimalColor)) {
+                minimalDeviation = deviation;
+                minimalColor = c;
+            }
+        }
+        return minimalColor;
+    }
+
+    /**
+     * 按下标升序列出所有未使用的候选色块
+     *
+     * @param order 输出的候选色块下标，长度不小于size()
+     * @return 未使用的候选色块数量
+     */
+    public int listFree(int[] order) {
+        int n = 0;
+        for (int w = 0; w < wordCount; w++) {
+            for (long word = free[w]; word != 0; word &= word - 1) {
+                order[n++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 按与期望颜色的偏离值从小到大列出所有未使用的候选色块，偏离值相同时下标小的在前
+     *
+     * @param r     期望颜色的R
+     * @param g     期望颜色的G
+     * @param b     期望颜色的B
+     * @param order 输出的候选色块下标，长度不小于size()
+     * @return 未使用的候选色块数量
+     */
+    public int sortFree(double r, double g, double b, int[] order) {
+        int n = listFree(order);
+        for (int p = 0; p < n; p++) {
+            int c = order[p];
+            double distance = deviation(r, g, b, ImageRGB.r(colors[c]), ImageRGB.g(colors[c]), ImageRGB.b(colors[c]));
+            int q = p;
+            for (; q > 0 && distances[q - 1] > distance; q--) {
+                order[q] = order[q - 1];
+                distances[q] = distances[q - 1];
+            }
+            order[q] = c;
+            distances[q] = distance;
+        }
+        return n;
+    }
+
+    /**
+     * @return 第一个颜色分量不小于key的排序位置
+     */
+    private int lowerBound(double key) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static double deviation(int rgb1, int rgb2) {
+        return deviation(ImageRGB.r(rgb1), ImageRGB.g(rgb1), ImageRGB.b(rgb1), ImageRGB.r(rgb2), ImageRGB.g(rgb2), ImageRGB.b(rgb2));
+    }
+
+    /**
+     * 两个颜色的偏离值，欧式距离
+     *
+     * @param r1 第一个颜色的R
+     * @param g1 第一个颜色的G
+     * @param b1 第一个颜色的B
+     * @param r2 第二个颜色的R
+     * @param g2 第二个颜色的G
+     * @param b2 第二个颜色的B
+     * @return 偏离值
+     */
+    private static double deviation(double r1, double g1, double b1, double r2, double g2, double b2) {
+        return (r1 - r2) * (r1 - r2) + (g1 - g2) * (g1 - g2) + (b1 - b2) * (b1 - b2);
+    }
+}
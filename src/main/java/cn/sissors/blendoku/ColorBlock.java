@@ -0,0 +1,100 @@
+package cn.sissors.blendoku;
+
+/**
+ * 截图中一个连通的纯色色块，记录颜色、外接矩形、像素数量与重心
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class ColorBlock {
+    private int rgb;
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+    private int pixelCount;
+    private long sumX;
+    private long sumY;
+    // 色块内第一个成簇像素的坐标（按列优先的扫描顺序），用于保持色块的输出顺序
+    private int anchorX;
+    private int anchorY;
+
+    public ColorBlock(int rgb, int minX, int minY, int maxX, int maxY, int pixelCount, long sumX, long sumY, int anchorX, int anchorY) {
+        this.rgb = rgb;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.pixelCount = pixelCount;
+        this.sumX = sumX;
+        this.sumY = sumY;
+        this.anchorX = anchorX;
+        this.anchorY = anchorY;
+    }
+
+    /**
+     * 以外接矩形表示的色块，例如由四个角标围成的空白格
+     */
+    public ColorBlock(int rgb, int minX, int minY, int maxX, int maxY) {
+        this(rgb, minX, minY, maxX, maxY, (maxX - minX + 1) * (maxY - minY + 1),
+                (long) (minX + maxX) * (maxX - minX + 1) * (maxY - minY + 1) / 2,
+                (long) (minY + maxY) * (maxX - minX + 1) * (maxY - minY + 1) / 2, minX, minY);
+    }
+
+    public int getRGB() {
+        return rgb;
+    }
+
+    public ColorRGB getColor() {
+        return new ColorRGB(rgb);
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getWidth() {
+        return maxX - minX + 1;
+    }
+
+    public int getHeight() {
+        return maxY - minY + 1;
+    }
+
+    public int getPixelCount() {
+        return pixelCount;
+    }
+
+    public double getCentroidX() {
+        return 1.0 * sumX / pixelCount;
+    }
+
+    public double getCentroidY() {
+        return 1.0 * sumY / pixelCount;
+    }
+
+    public int getAnchorX() {
+        return anchorX;
+    }
+
+    public int getAnchorY() {
+        return anchorY;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%d, %d]-[%d, %d]", new ColorRGB(rgb), minX, minY, maxX, maxY);
+    }
+}
@@ -0,0 +1,79 @@
+package cn.sissors.blendoku;
+
+import java.util.Arrays;
+
+/**
+ * 截图上的二维前缀和索引，用于O(1)判断任意矩形区域是否为同一颜色
+ * <p>
+ * 记录两张"与相邻像素颜色不同"的标记表：horizontal标记(x, y)与(x - 1, y)不同，vertical标记(x, y)与(x, y - 1)不同。
+ * 一个矩形内所有像素同色，当且仅当矩形内部横向、纵向相邻像素的不同标记之和都为0。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class ColorClusterIndex {
+    private int width;
+    private int height;
+    // 前缀和表，(width + 1) * (height + 1)，第0行第0列为0
+    private int[] horizontal;
+    private int[] vertical;
+
+    /**
+     * @param imageRGB   ImageRGB对象
+     * @param horizontal 横向前缀和表，至少(width + 1) * (height + 1)个元素，内容会被覆盖
+     * @param vertical   纵向前缀和表，同上
+     */
+    public ColorClusterIndex(ImageRGB imageRGB, int[] horizontal, int[] vertical) {
+        this.width = imageRGB.getWidth();
+        this.height = imageRGB.getHeight();
+        int stride = width + 1;
+        this.horizontal = horizontal;
+        this.vertical = vertical;
+        // 复用的表中第0行第0列可能残留上一张截图的数据
+        Arrays.fill(horizontal, 0, stride, 0);
+        Arrays.fill(vertical, 0, stride, 0);
+        for (int y = 1; y <= height; y++) {
+            horizontal[y * stride] = 0;
+            vertical[y * stride] = 0;
+        }
+        for (int y = 0; y < height; y++) {
+            int rowH = 0, rowV = 0;
+            for (int x = 0; x < width; x++) {
+                int rgb = imageRGB.rgbAt(x, y);
+                if (x > 0 && rgb != imageRGB.rgbAt(x - 1, y)) {
+                    rowH++;
+                }
+                if (y > 0 && rgb != imageRGB.rgbAt(x, y - 1)) {
+                    rowV++;
+                }
+                horizontal[(y + 1) * stride + x + 1] = horizontal[y * stride + x + 1] + rowH;
+                vertical[(y + 1) * stride + x + 1] = vertical[y * stride + x + 1] + rowV;
+            }
+        }
+    }
+
+    /**
+     * 检查[x1, x2] * [y1, y2]（包含边界）内的像素是否为同一颜色，超出截图范围时视为不成簇
+     *
+     * @param x1 横向坐标左边界
+     * @param y1 纵向坐标上边界
+     * @param x2 横向坐标右边界
+     * @param y2 纵向坐标下边界
+     * @return 是否同色
+     */
+    public boolean isCluster(int x1, int y1, int x2, int y2) {
+        if (x1 < 0 || y1 < 0 || x2 >= width || y2 >= height || x1 > x2 || y1 > y2) {
+            return false;
+        }
+        return sum(horizontal, x1 + 1, y1, x2, y2) == 0 && sum(vertical, x1, y1 + 1, x2, y2) == 0;
+    }
+
+    private int sum(int[] table, int x1, int y1, int x2, int y2) {
+        if (x1 > x2 || y1 > y2) {
+            return 0;
+        }
+        int stride = width + 1;
+        return table[(y2 + 1) * stride + x2 + 1] - table[y1 * stride + x2 + 1]
+                - table[(y2 + 1) * stride + x1] + table[y1 * stride + x1];
+    }
+}
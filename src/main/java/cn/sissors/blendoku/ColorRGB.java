@@ -1,7 +1,5 @@
 package cn.sissors.blendoku;
 
-import java.awt.*;
-
 /**
  * @author zyz
  * @version 2019-05-11
@@ -12,10 +10,9 @@ public class ColorRGB {
     private int b;
 
     public ColorRGB(int sRGB) {
-        Color color = new Color(sRGB);
-        this.r = color.getRed();
-        this.g = color.getGreen();
-        this.b = color.getBlue();
+        this.r = ImageRGB.r(sRGB);
+        this.g = ImageRGB.g(sRGB);
+        this.b = ImageRGB.b(sRGB);
     }
 
     public ColorRGB(int r, int g, int b) {
@@ -48,6 +45,10 @@ public class ColorRGB {
         this.b = b;
     }
 
+    public int getRGB() {
+        return (r << 16) | (g << 8) | b;
+    }
+
     public boolean isGrey() {
         return (r == g) && (r == b);
     }
@@ -0,0 +1,175 @@
+package cn.sissors.blendoku;
+
+import java.util.Arrays;
+
+/**
+ * 按度分桶的BLANK格子优先队列，用于每层搜索选择度最大的位置
+ * <p>
+ * 格子的度：上下左右每个不为NULL的格子+10，其中FIXED或FILLED再+1，取值范围0~44。
+ * 每个桶是一个位集，位的顺序与原先逐列扫描的顺序一致，因此度相同时仍然选择扫描中最先出现的格子。
+ * 填充与回溯只会改变该格子与其四个相邻格子，更新代价为O(1)；选择时从最高的桶向下找第一个非空桶。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class DegreeQueue {
+    private final static int MAX_DEGREE = 44;
+    private final static int[] DELTA_X = {-1, 1, 0, 0};
+    private final static int[] DELTA_Y = {0, 0, -1, 1};
+
+    private int width;
+    private int height;
+    // 格子下标在扫描顺序中的位置，以及反向映射
+    private int[] rank;
+    private int[] cellOfRank;
+    private int[] degrees;
+    private boolean[] queued;
+    // 每个桶只有前words个long有效
+    private long[][] buckets;
+    private int words;
+    private int[] sizes;
+
+    /**
+     * @param missionMap 地图MissionMap，所有BLANK格子进入队列
+     */
+    public DegreeQueue(MissionMap missionMap) {
+        reset(missionMap);
+    }
+
+    /**
+     * 改为另一张地图重新建立队列；数组不够大时才重新分配，用于SolverArena复用同一个队列
+     *
+     * @param missionMap 地图MissionMap，所有BLANK格子进入队列
+     */
+    public void reset(MissionMap missionMap) {
+        this.width = missionMap.getWidth();
+        this.height = missionMap.getHeight();
+        int size = width * height;
+        this.words = (size + 63) >>> 6;
+        if (rank == null || rank.length < size) {
+            this.rank = new int[size];
+            this.cellOfRank = new int[size];
+            this.degrees = new int[size];
+            this.queued = new boolean[size];
+            this.buckets = new long[MAX_DEGREE + 1][words];
+            this.sizes = new int[MAX_DEGREE + 1];
+        }
+        for (int d = 0; d <= MAX_DEGREE; d++) {
+            Arrays.fill(buckets[d], 0, words, 0);
+        }
+        Arrays.fill(sizes, 0);
+        Arrays.fill(degrees, 0, size, 0);
+        Arrays.fill(queued, 0, size, false);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int index = missionMap.index(x, y);
+                rank[index] = x * height + y;
+                cellOfRank[x * height + y] = index;
+                for (int k = 0; k < DELTA_X.length; k++) {
+                    MissionMap.Type type = missionMap.getType(x + DELTA_X[k], y + DELTA_Y[k]);
+                    if (type != MissionMap.Type.NULL) {
+                        degrees[index] += 10;
+                    }
+                    if (type == MissionMap.Type.FIXED || type == MissionMap.Type.FILLED) {
+                        degrees[index] += 1;
+                    }
+                }
+            }
+        }
+        for (int index = 0; index < size; index++) {
+            if (missionMap.getType(index % width, index / width) == MissionMap.Type.BLANK) {
+                insert(index);
+            }
+        }
+    }
+
+    private DegreeQueue(DegreeQueue other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.rank = other.rank;
+        this.cellOfRank = other.cellOfRank;
+        this.degrees = other.degrees.clone();
+        this.queued = other.queued.clone();
+        this.buckets = new long[other.buckets.length][];
+        for (int d = 0; d < buckets.length; d++) {
+            buckets[d] = Arrays.copyOf(other.buckets[d], other.words);
+        }
+        this.words = other.words;
+        this.sizes = other.sizes.clone();
+    }
+
+    /**
+     * 复制一份DegreeQueue，扫描顺序共享，度与队列各自独立；other之后不能再reset
+     */
+    public static DegreeQueue clone(DegreeQueue other) {
+        return new DegreeQueue(other);
+    }
+
+    private void insert(int index) {
+        int r = rank[index];
+        buckets[degrees[index]][r >>> 6] |= 1L << r;
+        sizes[degrees[index]]++;
+        queued[index] = true;
+    }
+
+    private void erase(int index) {
+        int r = rank[index];
+        buckets[degrees[index]][r >>> 6] &= ~(1L << r);
+        sizes[degrees[index]]--;
+        queued[index] = false;
+    }
+
+    /**
+     * 格子被填充：移出队列，相邻格子的度+1
+     *
+     * @param index 格子下标
+     */
+    public void remove(int index) {
+        erase(index);
+        adjust(index, 1);
+    }
+
+    /**
+     * 格子回溯为BLANK：相邻格子的度-1，重新进入队列
+     *
+     * @param index 格子下标
+     */
+    public void restore(int index) {
+        adjust(index, -1);
+        insert(index);
+    }
+
+    private void adjust(int index, int delta) {
+        int x = index % width, y = index / width;
+        for (int k = 0; k < DELTA_X.length; k++) {
+            int nx = x + DELTA_X[k], ny = y + DELTA_Y[k];
+            if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
+                int neighbour = ny * width + nx;
+                if (queued[neighbour]) {
+                    erase(neighbour);
+                    degrees[neighbour] += delta;
+                    insert(neighbour);
+                } else {
+                    degrees[neighbour] += delta;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 度最大的BLANK格子下标，度相同时取扫描顺序最靠前的；队列为空时为-1
+     */
+    public int peek() {
+        for (int d = MAX_DEGREE; d >= 0; d--) {
+            if (sizes[d] > 0) {
+                long[] bucket = buckets[d];
+                for (int w = 0; w < words; w++) {
+                    if (bucket[w] != 0) {
+                        return cellOfRank[(w << 6) + Long.numberOfTrailingZeros(bucket[w])];
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+}
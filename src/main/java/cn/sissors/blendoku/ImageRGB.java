@@ -1,18 +1,78 @@
 package cn.sissors.blendoku;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+
 /**
+ * 截图的像素数据，按行优先存放在一个int数组中，每个像素为打包的ARGB
+ *
  * @author zyz
  * @version 2019-05-11
  */
 public class ImageRGB {
     private int width;
     private int height;
-    private ColorRGB[][] colors;
+    private int[] pixels;
+    private ColorClusterIndex clusterIndex;
+    // 像素数组与前缀和表所在的SolverArena，为null时各自分配
+    private SolverArena arena;
 
-    public ImageRGB(int width, int height) {
+    private ImageRGB(int width, int height, int[] pixels, SolverArena arena) {
         this.width = width;
         this.height = height;
-        this.colors = new ColorRGB[width][height];
+        this.pixels = pixels;
+        this.arena = arena;
+    }
+
+    /**
+     * 从BufferedImage整块拷贝像素，常见的INT/BYTE格式直接读取底层数据，其余格式退化为一次getRGB批量读取
+     *
+     * @param image 截图
+     * @return 一个包含所有像素ARGB信息的ImageRGB对象
+     */
+    public static ImageRGB of(BufferedImage image) {
+        return of(image, null);
+    }
+
+    /**
+     * 与of(BufferedImage)相同，像素数组与之后的前缀和表取自arena，在arena下一次使用之前有效
+     *
+     * @param image 截图
+     * @param arena 当前线程的SolverArena，为null时各自分配
+     * @return 一个包含所有像素ARGB信息的ImageRGB对象
+     */
+    public static ImageRGB of(BufferedImage image, SolverArena arena) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int size = width * height;
+        int[] pixels = arena != null ? arena.pixels(size) : new int[size];
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        boolean packed = image.getRaster().getParent() == null
+                && image.getRaster().getSampleModelTranslateX() == 0
+                && image.getRaster().getSampleModelTranslateY() == 0;
+        if (packed && buffer instanceof DataBufferInt
+                && (image.getType() == BufferedImage.TYPE_INT_ARGB || image.getType() == BufferedImage.TYPE_INT_RGB)) {
+            int[] data = ((DataBufferInt) buffer).getData();
+            int opaque = image.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+            for (int i = 0; i < size; i++) {
+                pixels[i] = data[i] | opaque;
+            }
+        } else if (packed && buffer instanceof DataBufferByte && image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            byte[] data = ((DataBufferByte) buffer).getData();
+            for (int i = 0, k = 0; i < size; i++, k += 3) {
+                pixels[i] = 0xFF000000 | (data[k + 2] & 0xFF) << 16 | (data[k + 1] & 0xFF) << 8 | (data[k] & 0xFF);
+            }
+        } else if (packed && buffer instanceof DataBufferByte && image.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
+            byte[] data = ((DataBufferByte) buffer).getData();
+            for (int i = 0, k = 0; i < size; i++, k += 4) {
+                pixels[i] = (data[k] & 0xFF) << 24 | (data[k + 3] & 0xFF) << 16 | (data[k + 2] & 0xFF) << 8 | (data[k + 1] & 0xFF);
+            }
+        } else {
+            image.getRGB(0, 0, width, height, pixels, 0, width);
+        }
+        return new ImageRGB(width, height, pixels, arena);
     }
 
     public int getWidth() {
@@ -23,11 +83,49 @@ public class ImageRGB {
         return height;
     }
 
+    /**
+     * 读取(x, y)位置的sRGB，去掉了alpha通道，可以直接用==比较两个像素
+     *
+     * @param x 横向坐标
+     * @param y 纵向坐标
+     * @return 打包的0xRRGGBB
+     */
+    public int rgbAt(int x, int y) {
+        return pixels[y * width + x] & 0xFFFFFF;
+    }
+
+    /**
+     * 同色矩形的判定索引，第一次使用时构建，之后复用
+     *
+     * @return ColorClusterIndex对象
+     */
+    public ColorClusterIndex getClusterIndex() {
+        if (clusterIndex == null) {
+            int size = (width + 1) * (height + 1);
+            clusterIndex = arena != null
+                    ? new ColorClusterIndex(this, arena.horizontal(size), arena.vertical(size))
+                    : new ColorClusterIndex(this, new int[size], new int[size]);
+        }
+        return clusterIndex;
+    }
+
     public ColorRGB getColor(int x, int y) {
-        return colors[x][y];
+        return new ColorRGB(rgbAt(x, y));
+    }
+
+    public static int r(int rgb) {
+        return (rgb >> 16) & 0xFF;
+    }
+
+    public static int g(int rgb) {
+        return (rgb >> 8) & 0xFF;
+    }
+
+    public static int b(int rgb) {
+        return rgb & 0xFF;
     }
 
-    public void setColor(int x, int y, ColorRGB color) {
-        colors[x][y] = color;
+    public static boolean isGrey(int rgb) {
+        return r(rgb) == g(rgb) && r(rgb) == b(rgb);
     }
 }
@@ -0,0 +1,80 @@
+package cn.sissors.blendoku;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索过程中的当前最优解，可以被多个搜索线程共享
+ * <p>
+ * 最优偏离值以double的bit形式存放在AtomicLong中，剪枝时无锁读取；
+ * 只有真正更新最优解时才加锁复制地图。偏离值非负，其bit形式的大小顺序与数值一致。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class Incumbent {
+    private final AtomicLong deviationBits = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+    private double mapDeviation = Double.POSITIVE_INFINITY;
+    private MissionMap missionMap;
+    // 最优解被替换的次数
+    private long improvements;
+    private volatile IncumbentListener listener;
+
+    /**
+     * @param listener 最优解更新时的回调，为null时不回调
+     */
+    public void setListener(IncumbentListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return 当前最优解的偏离值，还没有解时为正无穷
+     */
+    public double getDeviation() {
+        return Double.longBitsToDouble(deviationBits.get());
+    }
+
+    /**
+     * 提交一个放置完的地图，偏离值严格小于当前最优解时替换之
+     *
+     * @param deviation  地图的偏离值
+     * @param missionMap 地图MissionMap，替换时会复制一份
+     * @return 是否成为新的最优解；并发提交时以加锁后的比较为准，已经被更优的解替换时为false
+     */
+    public boolean offer(double deviation, MissionMap missionMap) {
+        long bits = Double.doubleToLongBits(deviation);
+        while (true) {
+            long current = deviationBits.get();
+            if (deviation >= Double.longBitsToDouble(current)) {
+                return false;
+            }
+            if (deviationBits.compareAndSet(current, bits)) {
+                break;
+            }
+        }
+        synchronized (this) {
+            // CAS成功之后、加锁之前，可能已经有更优的解写入
+            if (deviation >= mapDeviation) {
+                return false;
+            }
+            mapDeviation = deviation;
+            improvements++;
+            this.missionMap = MissionMap.clone(missionMap);
+            IncumbentListener current = listener;
+            if (current != null) {
+                current.improved(deviation, MissionMap.clone(missionMap));
+            }
+            return true;
+        }
+    }
+
+    public synchronized MissionMap getMissionMap() {
+        return missionMap;
+    }
+
+    /**
+     * @return 最优解被替换的次数，第一个解也计算在内
+     */
+    public synchronized long getImprovements() {
+        return improvements;
+    }
+}
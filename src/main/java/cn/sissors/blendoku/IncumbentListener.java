@@ -0,0 +1,15 @@
+package cn.sissors.blendoku;
+
+/**
+ * 当前最优解更新的回调，在找到更优解的搜索线程中调用，同一个Incumbent的回调不会并发执行
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public interface IncumbentListener {
+    /**
+     * @param deviation  新的最优解的偏离值
+     * @param missionMap 新的最优解，是一份独立的复制
+     */
+    void improved(double deviation, MissionMap missionMap);
+}
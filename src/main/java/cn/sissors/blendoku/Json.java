@@ -0,0 +1,111 @@
+package cn.sissors.blendoku;
+
+/**
+ * 输出JSON时对地图、颜色与字符串的编码，用于关卡描述与批量求解的结果
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class Json {
+    private Json() {
+    }
+
+    /**
+     * @return 每行一个字符串的数组，'.'为NULL，'F'为FIXED，'B'为BLANK或FILLED
+     */
+    public static String board(MissionMap missionMap) {
+        StringBuilder board = new StringBuilder("[");
+        for (int y = 0; y < missionMap.getHeight(); y++) {
+            board.append(y > 0 ? "," : "").append('"');
+            for (int x = 0; x < missionMap.getWidth(); x++) {
+                switch (missionMap.getType(x, y)) {
+                    case FIXED:
+                        board.append('F');
+                        break;
+                    case BLANK:
+                    case FILLED:
+                        board.append('B');
+                        break;
+                    default:
+                        board.append('.');
+                }
+            }
+            board.append('"');
+        }
+        return board.append(']').toString();
+    }
+
+    /**
+     * @return FIXED格子的[x, y, 颜色]数组
+     */
+    public static String fixed(MissionMap missionMap) {
+        StringBuilder fixed = new StringBuilder("[");
+        for (int y = 0; y < missionMap.getHeight(); y++) {
+            for (int x = 0; x < missionMap.getWidth(); x++) {
+                if (missionMap.getType(x, y) == MissionMap.Type.FIXED) {
+                    fixed.append(fixed.length() > 1 ? "," : "")
+                            .append('[').append(x).append(',').append(y).append(',').append(color(missionMap.getColor(x, y))).append(']');
+                }
+            }
+        }
+        return fixed.append(']').toString();
+    }
+
+    /**
+     * @return FILLED格子的[x, y, 候选色块下标]数组
+     */
+    public static String assignment(MissionMap missionMap) {
+        StringBuilder assignment = new StringBuilder("[");
+        for (int y = 0; y < missionMap.getHeight(); y++) {
+            for (int x = 0; x < missionMap.getWidth(); x++) {
+                if (missionMap.getType(x, y) == MissionMap.Type.FILLED) {
+                    assignment.append(assignment.length() > 1 ? "," : "")
+                            .append('[').append(x).append(',').append(y).append(',').append(missionMap.getCandidate(x, y)).append(']');
+                }
+            }
+        }
+        return assignment.append(']').toString();
+    }
+
+    /**
+     * @return 颜色数组，每个颜色为"#rrggbb"
+     */
+    public static String colors(int[] colors) {
+        StringBuilder array = new StringBuilder("[");
+        for (int k = 0; k < colors.length; k++) {
+            array.append(k > 0 ? "," : "").append(color(colors[k]));
+        }
+        return array.append(']').toString();
+    }
+
+    /**
+     * @return "#rrggbb"形式的颜色
+     */
+    public static String color(int rgb) {
+        return String.format("\"#%06x\"", rgb & 0xFFFFFF);
+    }
+
+    /**
+     * @return 加上引号并转义的字符串
+     */
+    public static String string(String value) {
+        StringBuilder escaped = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.append('"').toString();
+    }
+
+    /**
+     * @return 数值，非有限值输出为null
+     */
+    public static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value);
+    }
+}
@@ -0,0 +1,268 @@
+package cn.sissors.blendoku;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 对完整放置的地图进行局部搜索（模拟退火），用于BLANK过多、无法完整搜索的关卡
+ * <p>
+ * 可变的格子是搜索时放置的FILLED格子，邻域包括两种移动：
+ * 1. 交换两个FILLED格子的色块
+ * 2. 把一个FILLED格子的色块换成一个未使用的候选色块
+ * 每次移动只影响所涉及格子所在的线段（最多四条），偏离值的变化只需重新计算这些线段，代价为O(线段长度)。
+ * 温度按时间从T0几何下降到T0 * END_TEMPERATURE_RATIO，T0取随机交换偏离值变化绝对值的平均值。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class LocalSearch {
+    // 估计初始温度时采样的移动次数
+    private final static int TEMPERATURE_SAMPLES = 100;
+    // 结束温度与初始温度之比
+    private final static double END_TEMPERATURE_RATIO = 1e-4;
+    // 每隔多少次移动检查一次时间并更新温度
+    private final static int CHECK_INTERVAL = 256;
+
+    private final MissionMap missionMap;
+    private final SegmentIndex segmentIndex;
+    private final CandidateIndex candidateIndex;
+    private final Random random;
+    // 可变格子的下标
+    private final int[] cells;
+    // 未使用的候选色块
+    private final int[] unused;
+    private int unusedCount;
+    // 每条线段当前的偏离值
+    private final double[] cost;
+    // 一次移动涉及的线段
+    private final int[] touched = new int[4];
+    private int touchedCount;
+    private long moves;
+
+    /**
+     * @param missionMap     完整放置（没有BLANK）的地图，会复制一份
+     * @param candidateIndex 候选色块的索引，只读取颜色
+     * @param seed           随机种子
+     */
+    public LocalSearch(MissionMap missionMap, CandidateIndex candidateIndex, long seed) {
+        this.missionMap = MissionMap.clone(missionMap);
+        // 局部搜索不使用置换表，不需要维护哈希值
+        this.segmentIndex = new SegmentIndex(this.missionMap);
+        this.candidateIndex = candidateIndex;
+        this.random = new Random(seed);
+        boolean[] used = new boolean[candidateIndex.size()];
+        int filled = 0;
+        for (int index = 0; index < missionMap.getWidth() * missionMap.getHeight(); index++) {
+            if (candidateAt(index) >= 0) {
+                filled++;
+                used[candidateAt(index)] = true;
+            }
+        }
+        this.cells = new int[filled];
+        this.unused = new int[candidateIndex.size()];
+        for (int index = 0, k = 0; index < missionMap.getWidth() * missionMap.getHeight(); index++) {
+            if (candidateAt(index) >= 0) {
+                cells[k++] = index;
+            }
+        }
+        for (int c = 0; c < candidateIndex.size(); c++) {
+            if (!used[c]) {
+                unused[unusedCount++] = c;
+            }
+        }
+        this.cost = new double[segmentIndex.getCount()];
+        for (int s = 0; s < cost.length; s++) {
+            cost[s] = segmentIndex.evaluate(this.missionMap, s);
+        }
+    }
+
+    /**
+     * 从同一个初始地图开始，并行运行多条独立的退火链，共享同一个Incumbent
+     *
+     * @param missionMap     完整放置的初始地图
+     * @param candidateIndex 候选色块的索引
+     * @param pool           运行退火链的线程池，每个线程一条链
+     * @param millis         每条链的时间，单位毫秒
+     * @param budget         时间预算与取消标记，用完时提前结束
+     * @param incumbent      共享的当前最优解
+     * @return 所有链的移动次数之和，当前线程被中断时为已经完成的链的移动次数
+     */
+    public static long anneal(MissionMap missionMap, CandidateIndex candidateIndex, ForkJoinPool pool, long millis, SearchBudget budget, Incumbent incumbent) {
+        List<Callable<Long>> taskList = Lists.newArrayList();
+        for (int k = 0; k < pool.getParallelism(); k++) {
+            long seed = k + 1;
+            taskList.add(() -> new LocalSearch(missionMap, candidateIndex, seed).anneal(millis, budget, incumbent));
+        }
+        long moves = 0;
+        try {
+            for (Future<Long> future : pool.invokeAll(taskList)) {
+                moves += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+        return moves;
+    }
+
+    /**
+     * 运行一条退火链，每次得到比Incumbent更优的地图时提交
+     *
+     * @param millis    时间，单位毫秒
+     * @param budget    时间预算与取消标记，用完时提前结束
+     * @param incumbent 共享的当前最优解
+     * @return 移动次数
+     */
+    public long anneal(long millis, SearchBudget budget, Incumbent incumbent) {
+        incumbent.offer(getDeviation(), missionMap);
+        // 没有可以移动的格子（全部是FIXED，或只有一个格子而没有未使用的色块）时，初始地图就是结果
+        if (cells.length == 0 || (cells.length < 2 && unusedCount == 0)) {
+            return 0;
+        }
+        double startTemperature = estimateTemperature();
+        double temperature = startTemperature;
+        double deviation = getDeviation();
+        long start = System.nanoTime();
+        long duration = millis * 1000000L;
+        for (long step = 0; ; step++) {
+            if (step % CHECK_INTERVAL == 0) {
+                long elapsed = System.nanoTime() - start;
+                if (elapsed >= duration || budget.isExhausted()) {
+                    break;
+                }
+                temperature = startTemperature * Math.pow(END_TEMPERATURE_RATIO, 1.0 * elapsed / duration);
+            }
+            int a = cells[random.nextInt(cells.length)];
+            boolean relocate = unusedCount > 0 && (cells.length < 2 || random.nextInt(cells.length + unusedCount) < unusedCount);
+            int b = relocate ? random.nextInt(unusedCount) : cells[random.nextInt(cells.length)];
+            if (!relocate && a == b) {
+                continue;
+            }
+            double delta = relocate ? relocate(a, b) : swap(a, b);
+            moves++;
+            if (delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature)) {
+                deviation += delta;
+                if (deviation < incumbent.getDeviation()) {
+                    // 累加的偏离值有浮点误差，提交前重新求和
+                    deviation = getDeviation();
+                    incumbent.offer(deviation, missionMap);
+                }
+            } else if (relocate) {
+                relocate(a, b);
+            } else {
+                swap(a, b);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * @return 随机交换的偏离值变化绝对值的平均值，交换后立即换回
+     */
+    private double estimateTemperature() {
+        double total = 0;
+        for (int k = 0; k < TEMPERATURE_SAMPLES; k++) {
+            int a = cells[random.nextInt(cells.length)];
+            if (unusedCount > 0) {
+                int u = random.nextInt(unusedCount);
+                total += Math.abs(relocate(a, u));
+                relocate(a, u);
+            } else {
+                int b = cells[random.nextInt(cells.length)];
+                total += Math.abs(swap(a, b));
+                swap(a, b);
+            }
+        }
+        return Math.max(total / TEMPERATURE_SAMPLES, 1);
+    }
+
+    /**
+     * 交换a、b两个格子的色块，再次调用即换回
+     *
+     * @return 偏离值的变化
+     */
+    private double swap(int a, int b) {
+        int ca = candidateAt(a), cb = candidateAt(b);
+        set(a, cb);
+        set(b, ca);
+        touchedCount = 0;
+        touch(a);
+        touch(b);
+        return update();
+    }
+
+    /**
+     * 把a格子的色块与第u个未使用的候选色块交换，再次调用即换回
+     *
+     * @return 偏离值的变化
+     */
+    private double relocate(int a, int u) {
+        int ca = candidateAt(a);
+        set(a, unused[u]);
+        unused[u] = ca;
+        touchedCount = 0;
+        touch(a);
+        return update();
+    }
+
+    private void touch(int index) {
+        touchSegment(segmentIndex.getVertical(index));
+        touchSegment(segmentIndex.getHorizontal(index));
+    }
+
+    private void touchSegment(int segment) {
+        for (int k = 0; k < touchedCount; k++) {
+            if (touched[k] == segment) {
+                return;
+            }
+        }
+        touched[touchedCount++] = segment;
+    }
+
+    /**
+     * 重新计算涉及的线段的偏离值
+     *
+     * @return 偏离值的变化
+     */
+    private double update() {
+        double delta = 0;
+        for (int k = 0; k < touchedCount; k++) {
+            double updated = segmentIndex.evaluate(missionMap, touched[k]);
+            delta += updated - cost[touched[k]];
+            cost[touched[k]] = updated;
+        }
+        return delta;
+    }
+
+    private int candidateAt(int index) {
+        return missionMap.getCandidate(index % missionMap.getWidth(), index / missionMap.getWidth());
+    }
+
+    private void set(int index, int candidate) {
+        missionMap.replace(index % missionMap.getWidth(), index / missionMap.getWidth(), candidate, candidateIndex.getColor(candidate));
+    }
+
+    /**
+     * @return 所有线段偏离值之和
+     */
+    public double getDeviation() {
+        double deviation = 0;
+        for (double c : cost) {
+            deviation += c;
+        }
+        return deviation;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+}
@@ -1,8 +1,12 @@
 package cn.sissors.blendoku;
 
-import java.util.List;
+import java.util.Arrays;
 
 /**
+ * 关卡地图，以行优先的一维数组存放每个格子的类型、颜色与使用的候选色块下标
+ * <p>
+ * 搜索过程中只会把BLANK填成FILLED，每次填充都记录在trail中，回溯时按mark()返回的位置原地撤销，不需要复制整个地图
+ *
  * @author zyz
  * @version 2019-05-11
  */
@@ -51,108 +55,176 @@ public class MissionMap {
         }
     }
 
-    static class Point {
-        private Type type;
-        private ColorRGB color;
+    private final static Type[] TYPES = Type.values();
 
-        public Point(Type type, ColorRGB color) {
-            this.type = type;
-            this.color = color;
-        }
+    private int width;
+    private int height;
+    // 格子类型，Type的ordinal
+    private byte[] types;
+    // 格子颜色，打包的sRGB，FILLED与FIXED有效
+    private int[] colors;
+    // FILLED格子使用的候选色块下标，其余为-1
+    private int[] candidates;
+    // 按填充顺序记录的FILLED格子下标
+    private int[] trail;
+    private int trailSize;
 
-        public Type getType() {
-            return type;
-        }
+    public MissionMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.types = new byte[width * height];
+        this.colors = new int[width * height];
+        this.candidates = new int[width * height];
+        this.trail = new int[width * height];
+        this.trailSize = 0;
+        Arrays.fill(candidates, -1);
+    }
 
-        public void setType(Type type) {
-            this.type = type;
-        }
+    public void setPoint(int x, int y, Type type, ColorRGB color) {
+        int index = index(x, y);
+        this.types[index] = (byte) type.ordinal();
+        this.colors[index] = color != null ? color.getRGB() : 0;
+        this.candidates[index] = -1;
+    }
 
-        public ColorRGB getColor() {
-            return color;
-        }
+    /**
+     * 在(x, y)处放置候选色块，并记录到trail中
+     *
+     * @param x         横向坐标
+     * @param y         纵向坐标
+     * @param candidate 候选色块下标
+     * @param rgb       候选色块的sRGB
+     */
+    public void fill(int x, int y, int candidate, int rgb) {
+        int index = index(x, y);
+        this.types[index] = (byte) Type.FILLED.ordinal();
+        this.colors[index] = rgb;
+        this.candidates[index] = candidate;
+        this.trail[trailSize++] = index;
+    }
+
+    /**
+     * 替换FILLED格子使用的候选色块，不记录到trail中，用于局部搜索在完整的地图上交换色块
+     *
+     * @param x         横向坐标
+     * @param y         纵向坐标
+     * @param candidate 候选色块下标
+     * @param rgb       候选色块的sRGB
+     */
+    public void replace(int x, int y, int candidate, int rgb) {
+        int index = index(x, y);
+        this.colors[index] = rgb;
+        this.candidates[index] = candidate;
+    }
 
-        public void setColor(ColorRGB color) {
-            this.color = color;
+    /**
+     * @return 当前trail的位置，用于之后的rollback
+     */
+    public int mark() {
+        return trailSize;
+    }
+
+    /**
+     * 撤销mark之后的所有填充，格子恢复为BLANK
+     *
+     * @param mark mark()返回的位置
+     */
+    public void rollback(int mark) {
+        while (trailSize > mark) {
+            int index = trail[--trailSize];
+            this.types[index] = (byte) Type.BLANK.ordinal();
+            this.colors[index] = 0;
+            this.candidates[index] = -1;
         }
     }
 
-    private final static Point NULL = new Point(Type.NULL, null);
+    public int getTrailSize() {
+        return trailSize;
+    }
 
-    private Point[][] points;
-    private int width;
-    private int height;
+    /**
+     * @param k trail中的位置
+     * @return 第k次填充的格子下标，横向坐标为index % width，纵向坐标为index / width
+     */
+    public int getTrail(int k) {
+        return trail[k];
+    }
 
-    public MissionMap(int width, int height) {
-        this.width = width;
-        this.height = height;
-        this.points = new Point[width][height];
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                setPoint(i, j, Type.NULL, null);
-            }
-        }
+    public int index(int x, int y) {
+        return y * width + x;
     }
 
-    public void setPoint(int x, int y, Type type, ColorRGB color) {
-        this.points[x][y] = new Point(type, color);
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
     }
 
-    public Point getPoint(int x, int y) {
-        if (x < 0 || x >= width || y < 0 || y >= height) {
-            return NULL;
+    /**
+     * @return (x, y)的类型，超出地图范围为NULL
+     */
+    public Type getType(int x, int y) {
+        if (!contains(x, y)) {
+            return Type.NULL;
         }
-        return this.points[x][y];
+        return TYPES[types[index(x, y)]];
     }
 
-    public int getWidth() {
-        return width;
+    /**
+     * @return (x, y)的颜色，打包的sRGB
+     */
+    public int getColor(int x, int y) {
+        return colors[index(x, y)];
     }
 
-    public void setWidth(int width) {
-        this.width = width;
+    /**
+     * @return (x, y)使用的候选色块下标，不是FILLED时为-1
+     */
+    public int getCandidate(int x, int y) {
+        return candidates[index(x, y)];
     }
 
-    public int getHeight() {
-        return height;
+    public int getWidth() {
+        return width;
     }
 
-    public void setHeight(int height) {
-        this.height = height;
+    public int getHeight() {
+        return height;
     }
 
     public static MissionMap clone(MissionMap other) {
         MissionMap missionMap = new MissionMap(other.width, other.height);
-        for (int i = 0; i < missionMap.getWidth(); i++) {
-            for (int j = 0; j < missionMap.getHeight(); j++) {
-                missionMap.setPoint(i, j, other.getPoint(i, j).type, ColorRGB.clone(other.getPoint(i, j).color));
-            }
-        }
+        missionMap.copy(other);
         return missionMap;
     }
 
-    public void print() {
-        for (int j = 0; j < this.getHeight(); j++) {
-            for (int i = 0; i < this.getWidth(); i++) {
-                System.out.print(String.format("%-10s ", this.getPoint(i, j).getType().toString()));
-            }
-            System.out.println();
-            System.out.println();
-        }
-        System.out.println();
+    /**
+     * 把other复制到这个地图，包括trail；数组不够大时才重新分配，用于SolverArena复用同一个地图
+     *
+     * @param other 复制的地图
+     */
+    public void copy(MissionMap other) {
+        int size = other.width * other.height;
+        if (types.length < size) {
+            this.types = new byte[size];
+            this.colors = new int[size];
+            this.candidates = new int[size];
+            this.trail = new int[size];
+        }
+        this.width = other.width;
+        this.height = other.height;
+        System.arraycopy(other.types, 0, types, 0, size);
+        System.arraycopy(other.colors, 0, colors, 0, size);
+        System.arraycopy(other.candidates, 0, candidates, 0, size);
+        System.arraycopy(other.trail, 0, trail, 0, other.trailSize);
+        this.trailSize = other.trailSize;
     }
 
-    public void print(List<ColorRGB> candidateColorList) {
+    public void print() {
         for (int j = 0; j < this.getHeight(); j++) {
             for (int i = 0; i < this.getWidth(); i++) {
-                if (this.getPoint(i, j).getType() == Type.FILLED) {
-                    for (int k = 0; k < candidateColorList.size(); k++) {
-                        if (candidateColorList.get(k).equals(this.getPoint(i, j).getColor())) {
-                            System.out.print(String.format("%-10s ", this.getPoint(i, j).getType().toString() + "(" + k + ")"));
-                        }
-                    }
+                if (this.getType(i, j) == Type.FILLED) {
+                    System.out.print(String.format("%-10s ", this.getType(i, j).toString() + "(" + this.getCandidate(i, j) + ")"));
                 } else {
-                    System.out.print(String.format("%-10s ", this.getPoint(i, j).getType().toString()));
+                    System.out.print(String.format("%-10s ", this.getType(i, j).toString()));
                 }
             }
             System.out.println();
@@ -0,0 +1,809 @@
+package cn.sissors.blendoku;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 对一个关卡地图的搜索状态：地图、候选色块的使用情况与线段偏离值，以及在其上进行的推导与深度优先搜索
+ * <p>
+ * 每个搜索线程持有自己的MissionSearch，彼此之间只共享只读的候选色块、Incumbent与TranspositionTable
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class MissionSearch {
+    private final int totalBlanks;
+    private final Incumbent incumbent;
+    // 置换表，为null时不使用
+    private final TranspositionTable transpositionTable;
+    private final SearchBudget budget;
+    // 索引、队列与临时数组的来源，clone得到的分支各自使用新的SolverArena
+    private final SolverArena arena;
+    private MissionMap missionMap;
+    private SegmentIndex segmentIndex;
+    private CandidateIndex candidateIndex;
+    private DegreeQueue degreeQueue;
+    // 每一层搜索尝试候选色块的顺序，以及放置之后的偏离值下界
+    private int[][] branchOrders;
+    private double[][] branchBounds;
+    // expectedColor的输出
+    private double[] expected;
+    // forwardBound枚举未使用候选色块的临时数组
+    private int[] freeCandidates;
+    // assignmentBound的费用矩阵与指派算法的工作数组，第一次计算下界时从arena取出
+    private Assignment assignment;
+    // replay从根节点到open表节点的选择序列，长度不超过BLANK数量，第一次重放时从arena取出
+    private int[] replayPath;
+    private long searchedNodes;
+    private long prunedNodes;
+    private long transposedNodes;
+    private long symmetricBranches;
+    private long deadEnds;
+    // 推导：调用expand的次数与推导放置的色块数量，不包括orderBranches的试放
+    private long expandCalls;
+    private long inferredCells;
+    // orderBranches为排序候选色块而试放并推导的次数
+    private long probeCalls;
+    // 放置完的地图提交给Incumbent的次数
+    private long leafEvaluations;
+    // 到达过的最大搜索深度，即同时放置的BLANK数量的最大值
+    private int peakDepth;
+
+    /**
+     * 最佳优先搜索与束搜索的节点，只记录相对父节点的一次选择，状态由根节点依次重放得到
+     */
+    private static class OpenNode {
+        private final OpenNode parent;
+        // 选择的格子下标与候选色块下标，根节点为-1
+        private final int index;
+        private final int candidate;
+        private final int depth;
+        // 当前偏离值 + 之后偏离值的下界
+        private final double bound;
+
+        OpenNode(OpenNode parent, int index, int candidate, int depth, double bound) {
+            this.parent = parent;
+            this.index = index;
+            this.candidate = candidate;
+            this.depth = depth;
+            this.bound = bound;
+        }
+    }
+
+    /**
+     * 并行搜索中的一个分支
+     */
+    private static class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final MissionSearch missionSearch;
+        private final int depth;
+        private final int splitDepth;
+
+        SearchTask(MissionSearch missionSearch, int depth, int splitDepth) {
+            this.missionSearch = missionSearch;
+            this.depth = depth;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected void compute() {
+            missionSearch.resolveMissionMap(depth, splitDepth);
+        }
+    }
+
+    /**
+     * @param missionMap         初始地图，搜索会直接在其上放置色块
+     * @param candidateIndex     候选色块的索引，搜索会直接在其上标记使用情况
+     * @param incumbent          共享的当前最优解
+     * @param transpositionTable 共享的置换表，为null时不使用
+     * @param budget             共享的时间预算与取消标记
+     */
+    public MissionSearch(MissionMap missionMap, CandidateIndex candidateIndex, Incumbent incumbent, TranspositionTable transpositionTable,
+                         SearchBudget budget) {
+        this(missionMap, candidateIndex, incumbent, transpositionTable, budget, new SolverArena());
+    }
+
+    /**
+     * @param missionMap         初始地图，搜索会直接在其上放置色块
+     * @param candidateIndex     候选色块的索引，搜索会直接在其上标记使用情况
+     * @param incumbent          共享的当前最优解
+     * @param transpositionTable 共享的置换表，为null时不使用
+     * @param budget             共享的时间预算与取消标记
+     * @param arena              当前线程的SolverArena，线段索引、度队列、Zobrist随机键与临时数组都从中取出
+     */
+    public MissionSearch(MissionMap missionMap, CandidateIndex candidateIndex, Incumbent incumbent, TranspositionTable transpositionTable,
+                         SearchBudget budget, SolverArena arena) {
+        this.incumbent = incumbent;
+        this.transpositionTable = transpositionTable;
+        this.budget = budget;
+        this.arena = arena;
+        this.missionMap = missionMap;
+        this.segmentIndex = arena.segmentIndex(missionMap, arena.zobrist(missionMap.getWidth() * missionMap.getHeight(), candidateIndex.size()));
+        this.candidateIndex = candidateIndex;
+        this.degreeQueue = arena.degreeQueue(missionMap);
+        int blanks = 0;
+        for (int i = 0; i < missionMap.getWidth(); i++) {
+            for (int j = 0; j < missionMap.getHeight(); j++) {
+                if (missionMap.getType(i, j) == MissionMap.Type.BLANK) {
+                    blanks++;
+                }
+            }
+        }
+        this.totalBlanks = blanks;
+        this.branchOrders = arena.branchOrders(blanks, candidateIndex.size());
+        this.branchBounds = arena.branchBounds(blanks, candidateIndex.size());
+        this.expected = new double[3];
+        this.freeCandidates = arena.candidates(candidateIndex.size());
+    }
+
+    private MissionSearch(MissionSearch other) {
+        this.totalBlanks = other.totalBlanks;
+        this.incumbent = other.incumbent;
+        this.transpositionTable = other.transpositionTable;
+        this.budget = other.budget;
+        this.arena = new SolverArena();
+        this.missionMap = MissionMap.clone(other.missionMap);
+        this.segmentIndex = SegmentIndex.clone(other.segmentIndex);
+        this.candidateIndex = CandidateIndex.clone(other.candidateIndex);
+        this.degreeQueue = DegreeQueue.clone(other.degreeQueue);
+        this.branchOrders = arena.branchOrders(totalBlanks, candidateIndex.size());
+        this.branchBounds = arena.branchBounds(totalBlanks, candidateIndex.size());
+        this.expected = new double[3];
+        this.freeCandidates = arena.candidates(candidateIndex.size());
+    }
+
+    /**
+     * 复制一份独立的搜索状态，计数从0开始
+     */
+    public static MissionSearch clone(MissionSearch other) {
+        return new MissionSearch(other);
+    }
+
+    /**
+     * 在当前线程内串行搜索
+     *
+     * @param depth 当前的搜索深度，即已经放置的BLANK数量
+     */
+    public void resolveMissionMap(int depth) {
+        resolveMissionMap(depth, 0);
+    }
+
+    /**
+     * 在ForkJoinPool中并行搜索，前splitDepth层拆分为独立的任务
+     *
+     * @param depth      当前的搜索深度，即已经放置的BLANK数量
+     * @param pool       执行搜索任务的线程池
+     * @param splitDepth 拆分为并行任务的层数
+     */
+    public void resolveMissionMap(int depth, ForkJoinPool pool, int splitDepth) {
+        pool.invoke(new SearchTask(this, depth, splitDepth));
+    }
+
+    public long getSearchedNodes() {
+        return searchedNodes;
+    }
+
+    public long getPrunedNodes() {
+        return prunedNodes;
+    }
+
+    public long getTransposedNodes() {
+        return transposedNodes;
+    }
+
+    /**
+     * @return 前向检查发现某个格子已经没有可行候选色块而回溯的节点数量
+     */
+    public long getDeadEnds() {
+        return deadEnds;
+    }
+
+    /**
+     * @return 因等价类对称而没有尝试的分支数量
+     */
+    public long getSymmetricBranches() {
+        return symmetricBranches;
+    }
+
+    public long getExpandCalls() {
+        return expandCalls;
+    }
+
+    /**
+     * @return 由expand推导放置的色块数量，包括初始扩展与搜索中每次放置之后的推导，不包括orderBranches的试放
+     */
+    public long getInferredCells() {
+        return inferredCells;
+    }
+
+    /**
+     * @return orderBranches为排序候选色块而试放、推导并回溯的次数
+     */
+    public long getProbeCalls() {
+        return probeCalls;
+    }
+
+    /**
+     * @return 放置完的地图提交给Incumbent的次数
+     */
+    public long getLeafEvaluations() {
+        return leafEvaluations;
+    }
+
+    public int getPeakDepth() {
+        return peakDepth;
+    }
+
+    /**
+     * 累加并行分支中独立搜索状态的计数
+     */
+    private void addCounters(MissionSearch other) {
+        searchedNodes += other.searchedNodes;
+        prunedNodes += other.prunedNodes;
+        transposedNodes += other.transposedNodes;
+        symmetricBranches += other.symmetricBranches;
+        deadEnds += other.deadEnds;
+        expandCalls += other.expandCalls;
+        inferredCells += other.inferredCells;
+        probeCalls += other.probeCalls;
+        leafEvaluations += other.leafEvaluations;
+        peakDepth = Math.max(peakDepth, other.peakDepth);
+    }
+
+    /**
+     * 优化一：对初始的地图，根据已经给定的初始方块位置，尝试推导空白位置的颜色，来扩展地图，缩小搜索树宽度
+     *
+     * @return 推导并放置了色块的数量
+     */
+    public int expandMissionMap() {
+        int mark = missionMap.mark();
+        for (int i = 0; i < missionMap.getWidth(); i++) {
+            for (int j = 0; j < missionMap.getHeight(); j++) {
+                if (missionMap.getType(i, j) == MissionMap.Type.FIXED) {
+                    int head = missionMap.getTrailSize();
+                    expand(i, j);
+                    expandTrail(head);
+                }
+            }
+        }
+        return missionMap.getTrailSize() - mark;
+    }
+
+    /**
+     * 深度优先搜索，时间预算用完时立即返回，根据当前的地图，由DegreeQueue选择度最大的位置，枚举可以放置的颜色，标记后进入下一层
+     * 优化二：已放置完的行列偏离值是整棵子树的下界，下界不小于当前最优解时剪枝；偏离值由SegmentIndex增量维护
+     * 并行时，前splitDepth层的每个分支复制一份独立的搜索状态，作为ForkJoin任务执行，所有任务共享同一个Incumbent，
+     * 任何一个任务找到的更优解都会立即用于其他任务的剪枝
+     * 优化三：同一等价类的候选色块只尝试下标最小的未使用色块，见CandidateIndex
+     * 优化四：按放置并推导之后的偏离值下界从小到大尝试候选色块，下界相同时按与期望颜色的偏离值排序，尽早找到好的解，使剪枝更有效
+     * 优化五：前向检查，某个BLANK的可行候选色块为空时立即回溯，见forwardBound；试放下界不优于当前最优解的色块不再尝试
+     * 优化六：完整搜索过的状态记录在置换表中，再次到达哈希值相同的状态时，用记录的之后偏离值下界剪枝
+     *
+     * @param depth      当前层的搜索深度
+     * @param splitDepth 仍需拆分为并行任务的层数，0表示在当前线程内串行搜索
+     */
+    private void resolveMissionMap(int depth, int splitDepth) {
+        if (budget.isExhausted()) {
+            return;
+        }
+        searchedNodes++;
+        peakDepth = Math.max(peakDepth, depth);
+        if (depth >= totalBlanks) {
+            leafEvaluations++;
+            incumbent.offer(segmentIndex.getDeviation(), missionMap);
+            return;
+        }
+        double deviation = segmentIndex.getDeviation();
+        if (deviation >= incumbent.getDeviation()) {
+            prunedNodes++;
+            return;
+        }
+        long key = segmentIndex.getHash();
+        if (transpositionTable != null && deviation + transpositionTable.get(key) >= incumbent.getDeviation()) {
+            transposedNodes++;
+            return;
+        }
+        if (deviation + forwardBound() >= incumbent.getDeviation()) {
+            deadEnds++;
+            return;
+        }
+        int index = degreeQueue.peek();
+        int i = index % missionMap.getWidth();
+        int j = index / missionMap.getWidth();
+        if (index >= 0) {
+            // 只有拆分并行任务的层需要任务列表，串行搜索的节点不分配
+            List<SearchTask> taskList = splitDepth > 0 ? Lists.newArrayList() : null;
+            int[] order = branchOrders[depth];
+            int count = orderBranches(i, j, order, branchBounds[depth]);
+            for (int p = 0; p < count && branchBounds[depth][p] < incumbent.getDeviation(); p++) {
+                int k = order[p];
+                if (splitDepth > 0) {
+                    MissionSearch branch = MissionSearch.clone(this);
+                    int n = branch.place(i, j, k);
+                    taskList.add(new SearchTask(branch, depth + n, splitDepth - 1));
+                } else {
+                    int mark = missionMap.mark();
+                    int n = place(i, j, k);
+                    resolveMissionMap(depth + n, 0);
+                    rollback(mark);
+                }
+            }
+            if (taskList != null && !taskList.isEmpty()) {
+                ForkJoinTask.invokeAll(taskList);
+                for (SearchTask task : taskList) {
+                    addCounters(task.missionSearch);
+                }
+            }
+        }
+        // 预算用完时子树没有搜索完，不能记录下界
+        if (transpositionTable != null && !budget.isInterrupted()) {
+            transpositionTable.put(key, incumbent.getDeviation() - deviation, totalBlanks - depth);
+        }
+    }
+
+    /**
+     * 最佳优先（A*）搜索：每次展开open表中 当前偏离值 + 之后偏离值下界 最小的节点，下界见assignmentBound
+     * 下界不小于当前最优解时，open表中其余节点都不可能更优，搜索空间已经穷尽。
+     * open表超过openLimit个节点时停止展开，按下界从小到大对剩余节点依次进行深度优先搜索，搜索空间同样穷尽。
+     * 与深度优先搜索一样，搜索空间是expand推导限制之后的空间，穷尽不代表全局最优，见SearchResult.isExhausted
+     *
+     * @param depth     当前的搜索深度，即已经放置的BLANK数量
+     * @param openLimit open表的最大节点数
+     */
+    public void resolveBestFirst(int depth, int openLimit) {
+        PriorityQueue<OpenNode> open = new PriorityQueue<>(Comparator.<OpenNode>comparingDouble(node -> node.bound)
+                .thenComparing(node -> -node.depth));
+        int root = missionMap.mark();
+        if (depth >= totalBlanks) {
+            leafEvaluations++;
+            incumbent.offer(segmentIndex.getDeviation(), missionMap);
+            return;
+        }
+        open.add(new OpenNode(null, -1, -1, depth, segmentIndex.getDeviation() + assignmentBound()));
+        while (!open.isEmpty() && open.size() <= openLimit && open.peek().bound < incumbent.getDeviation() && !budget.isExhausted()) {
+            expandOpenNode(open.poll(), root, open);
+        }
+        while (!open.isEmpty() && open.peek().bound < incumbent.getDeviation() && !budget.isExhausted()) {
+            OpenNode node = open.poll();
+            replay(node, root);
+            resolveMissionMap(node.depth, 0);
+        }
+        rollback(root);
+    }
+
+    /**
+     * 束搜索：逐层展开，每层只保留 当前偏离值 + 之后偏离值下界 最小的width个节点，下界见assignmentBound
+     * 时间与内存只取决于width，与候选色块的数量无关；某一层节点被截断后搜索空间不再穷尽。
+     * 并行时每层的节点按顺序分成连续的几段，分别由独立的搜索状态展开，合并后的顺序与串行展开一致
+     *
+     * @param depth 当前的搜索深度，即已经放置的BLANK数量
+     * @param width 每层保留的节点数
+     * @param pool  并行展开的线程池，为null时在当前线程内展开
+     * @return 是否没有截断任何一层，即搜索空间是否已经穷尽（时间预算用完时另行判断）
+     */
+    public boolean resolveBeam(int depth, int width, ForkJoinPool pool) {
+        int root = missionMap.mark();
+        if (depth >= totalBlanks) {
+            leafEvaluations++;
+            incumbent.offer(segmentIndex.getDeviation(), missionMap);
+            return true;
+        }
+        List<MissionSearch> searchList = Lists.newArrayList(this);
+        for (int w = 1; pool != null && w < pool.getParallelism(); w++) {
+            searchList.add(MissionSearch.clone(this));
+        }
+        boolean exact = true;
+        List<OpenNode> beam = Lists.newArrayList(new OpenNode(null, -1, -1, depth, segmentIndex.getDeviation() + assignmentBound()));
+        while (!beam.isEmpty() && !budget.isExhausted()) {
+            List<OpenNode> next = Lists.newArrayList();
+            if (searchList.size() == 1) {
+                expandBeam(beam, root, next);
+            } else {
+                List<ForkJoinTask<List<OpenNode>>> taskList = Lists.newArrayList();
+                for (int w = 0; w < searchList.size(); w++) {
+                    MissionSearch search = searchList.get(w);
+                    List<OpenNode> part = beam.subList(w * beam.size() / searchList.size(), (w + 1) * beam.size() / searchList.size());
+                    taskList.add(pool.submit(() -> search.expandBeam(part, root, Lists.newArrayList())));
+                }
+                for (ForkJoinTask<List<OpenNode>> task : taskList) {
+                    next.addAll(task.join());
+                }
+            }
+            next.removeIf(node -> node.bound >= incumbent.getDeviation());
+            next.sort(Comparator.<OpenNode>comparingDouble(node -> node.bound).thenComparing(node -> -node.depth));
+            if (next.size() > width) {
+                exact = false;
+                next = Lists.newArrayList(next.subList(0, width));
+            }
+            beam = next;
+        }
+        for (MissionSearch search : searchList) {
+            search.rollback(root);
+            if (search != this) {
+                addCounters(search);
+            }
+        }
+        return exact;
+    }
+
+    /**
+     * 依次展开束中的节点，时间预算用完时停止
+     *
+     * @param nodes    需要展开的节点
+     * @param root     根节点在trail中的位置
+     * @param children 输出的子节点
+     * @return children
+     */
+    private List<OpenNode> expandBeam(List<OpenNode> nodes, int root, List<OpenNode> children) {
+        for (OpenNode node : nodes) {
+            if (budget.isExhausted()) {
+                break;
+            }
+            expandOpenNode(node, root, children);
+        }
+        return children;
+    }
+
+    /**
+     * 重放到node，枚举下一个位置的候选色块：放置完的地图提交给Incumbent，
+     * 其余子节点计算 当前偏离值 + 之后偏离值下界，小于当前最优解时加入children
+     *
+     * @param node     展开的节点
+     * @param root     根节点在trail中的位置
+     * @param children 子节点的输出
+     */
+    private void expandOpenNode(OpenNode node, int root, Collection<OpenNode> children) {
+        searchedNodes++;
+        peakDepth = Math.max(peakDepth, node.depth);
+        replay(node, root);
+        int index = degreeQueue.peek();
+        int i = index % missionMap.getWidth();
+        int j = index / missionMap.getWidth();
+        int[] order = branchOrders[node.depth];
+        int count = orderBranches(i, j, order, branchBounds[node.depth]);
+        for (int p = 0; p < count && branchBounds[node.depth][p] < incumbent.getDeviation(); p++) {
+            int mark = missionMap.mark();
+            int n = place(i, j, order[p]);
+            if (node.depth + n >= totalBlanks) {
+                leafEvaluations++;
+                incumbent.offer(segmentIndex.getDeviation(), missionMap);
+            } else {
+                double bound = segmentIndex.getDeviation() + assignmentBound();
+                if (bound < incumbent.getDeviation()) {
+                    children.add(new OpenNode(node, index, order[p], node.depth + n, bound));
+                } else {
+                    deadEnds++;
+                }
+            }
+            rollback(mark);
+        }
+    }
+
+    /**
+     * 贪心补全：每层只放置试放下界最小的候选色块，不回溯，得到一个完整的地图并提交给Incumbent，作为局部搜索的初始解
+     *
+     * @param depth 当前的搜索深度，即已经放置的BLANK数量
+     * @return 是否补全了所有BLANK，候选色块不够时为false
+     */
+    public boolean resolveGreedy(int depth) {
+        while (depth < totalBlanks) {
+            int index = degreeQueue.peek();
+            int i = index % missionMap.getWidth();
+            int j = index / missionMap.getWidth();
+            if (orderBranches(i, j, branchOrders[depth], branchBounds[depth]) == 0) {
+                return false;
+            }
+            searchedNodes++;
+            depth += place(i, j, branchOrders[depth][0]);
+        }
+        peakDepth = Math.max(peakDepth, depth);
+        leafEvaluations++;
+        incumbent.offer(segmentIndex.getDeviation(), missionMap);
+        return true;
+    }
+
+    /**
+     * 回溯到root，再依次重放从根节点到node的每次选择
+     */
+    private void replay(OpenNode node, int root) {
+        rollback(root);
+        int length = 0;
+        for (OpenNode current = node; current.parent != null; current = current.parent) {
+            length++;
+        }
+        if (replayPath == null) {
+            replayPath = arena.path(totalBlanks);
+        }
+        int[] path = replayPath;
+        int count = length;
+        for (OpenNode current = node; current.parent != null; current = current.parent) {
+            path[--length] = current.index * candidateIndex.size() + current.candidate;
+        }
+        for (int p = 0; p < count; p++) {
+            int step = path[p];
+            int index = step / candidateIndex.size();
+            place(index % missionMap.getWidth(), index / missionMap.getWidth(), step % candidateIndex.size());
+        }
+    }
+
+    /**
+     * 指派松弛下界：与forwardBound相同，只考虑所在线段只剩自己一个BLANK的格子，
+     * 但要求这些格子使用互不相同的未使用候选色块，用最小费用指派求解，因此不小于forwardBound
+     *
+     * @return 之后偏离值的下界，这类格子多于未使用的候选色块时为正无穷
+     */
+    private double assignmentBound() {
+        int free = candidateIndex.listFree(freeCandidates);
+        if (assignment == null) {
+            assignment = arena.assignment(totalBlanks, candidateIndex.size());
+        }
+        int rows = 0;
+        for (int index = 0; index < missionMap.getWidth() * missionMap.getHeight(); index++) {
+            if (missionMap.getType(index % missionMap.getWidth(), index / missionMap.getWidth()) != MissionMap.Type.BLANK) {
+                continue;
+            }
+            int vertical = segmentIndex.getVertical(index);
+            int horizontal = segmentIndex.getHorizontal(index);
+            boolean checkVertical = isLastBlank(vertical);
+            boolean checkHorizontal = isLastBlank(horizontal);
+            if (!checkVertical && !checkHorizontal) {
+                continue;
+            }
+            double[] cost = assignment.getRow(rows);
+            for (int p = 0; p < free; p++) {
+                int rgb = candidateIndex.getColor(freeCandidates[p]);
+                cost[p] = (checkVertical ? segmentIndex.evaluate(missionMap, vertical, index, rgb) : 0)
+                        + (checkHorizontal ? segmentIndex.evaluate(missionMap, horizontal, index, rgb) : 0);
+            }
+            rows++;
+        }
+        return assignment.minCost(rows, free);
+    }
+
+    /**
+     * 确定在(i, j)尝试候选色块的顺序：
+     * 1. 按与期望颜色的偏离值列出未使用的候选色块，同一等价类只保留下标最小的一个
+     * 2. 逐个试放并推导，记录之后的偏离值下界，然后回溯
+     * 3. 按下界稳定排序，下界相同的保持与期望颜色的偏离值顺序
+     *
+     * @param i      横向坐标
+     * @param j      纵向坐标
+     * @param order  输出的候选色块下标
+     * @param bounds 输出的偏离值下界
+     * @return 需要尝试的候选色块数量
+     */
+    private int orderBranches(int i, int j, int[] order, double[] bounds) {
+        int free = expectedColor(i, j)
+                ? candidateIndex.sortFree(expected[0], expected[1], expected[2], order)
+                : candidateIndex.listFree(order);
+        int count = 0;
+        for (int p = 0; p < free; p++) {
+            int k = order[p];
+            if (!candidateIndex.isRepresentative(k)) {
+                symmetricBranches++;
+                continue;
+            }
+            // 试放的推导只计入probeCalls，expandCalls与inferredCells只统计搜索本身的推导
+            long calls = expandCalls;
+            long cells = inferredCells;
+            int mark = missionMap.mark();
+            place(i, j, k);
+            double bound = segmentIndex.getDeviation();
+            rollback(mark);
+            expandCalls = calls;
+            inferredCells = cells;
+            probeCalls++;
+            int q = count++;
+            for (; q > 0 && bounds[q - 1] > bound; q--) {
+                order[q] = order[q - 1];
+                bounds[q] = bounds[q - 1];
+            }
+            order[q] = k;
+            bounds[q] = bound;
+        }
+        return count;
+    }
+
+    /**
+     * 前向检查：计算之后偏离值的下界
+     * 若某条线段只剩一个BLANK，这条线段最终的偏离值只取决于该格子放置的色块，可以对每个未使用的候选色块试算。
+     * 每个这样的格子取其所在的（一条或两条）这类线段试算之和的最小值，各格子的最小值相加即为下界：
+     * 这些线段互不相同，也都不在已放置完的线段中，且忽略了色块不能重复使用的限制。
+     * 格子的可行候选色块即试算值不超过 当前最优解 - 当前偏离值 - 其他格子最小值 的色块，
+     * 因此任意一个格子没有可行候选色块，等价于 当前偏离值 + 下界 不小于当前最优解。
+     *
+     * @return 之后偏离值的下界，没有未使用的候选色块时为正无穷
+     */
+    private double forwardBound() {
+        double bound = 0;
+        int free = -1;
+        for (int index = 0; index < missionMap.getWidth() * missionMap.getHeight(); index++) {
+            if (missionMap.getType(index % missionMap.getWidth(), index / missionMap.getWidth()) != MissionMap.Type.BLANK) {
+                continue;
+            }
+            int vertical = segmentIndex.getVertical(index);
+            int horizontal = segmentIndex.getHorizontal(index);
+            boolean checkVertical = isLastBlank(vertical);
+            boolean checkHorizontal = isLastBlank(horizontal);
+            if (!checkVertical && !checkHorizontal) {
+                continue;
+            }
+            if (free < 0) {
+                free = candidateIndex.listFree(freeCandidates);
+            }
+            double minimal = Double.POSITIVE_INFINITY;
+            for (int p = 0; p < free; p++) {
+                int rgb = candidateIndex.getColor(freeCandidates[p]);
+                double cost = (checkVertical ? segmentIndex.evaluate(missionMap, vertical, index, rgb) : 0)
+                        + (checkHorizontal ? segmentIndex.evaluate(missionMap, horizontal, index, rgb) : 0);
+                minimal = Math.min(minimal, cost);
+            }
+            bound += minimal;
+        }
+        return bound;
+    }
+
+    /**
+     * @return 线段是否只剩一个BLANK，且放置后会产生偏离值（长度为1的线段偏离值恒为0）
+     */
+    private boolean isLastBlank(int segment) {
+        return segmentIndex.getLength(segment) > 1 && segmentIndex.getPlaced(segment) == segmentIndex.getLength(segment) - 1;
+    }
+
+    /**
+     * 在(i, j)放置第k个候选色块，并以它为起点推导扩展整个地图
+     *
+     * @param i 横向坐标
+     * @param j 纵向坐标
+     * @param k 候选色块下标
+     * @return 放置与推导出的色块数量
+     */
+    private int place(int i, int j, int k) {
+        int mark = missionMap.mark();
+        fill(i, j, k);
+        expandTrail(mark);
+        return missionMap.getTrailSize() - mark;
+    }
+
+    /**
+     * 以MissionMap的trail作为广度优先的队列：从mark开始依次扩展每个已填充的格子，扩展出的格子追加在trail末尾
+     *
+     * @param head 队首在trail中的位置
+     */
+    private void expandTrail(int head) {
+        for (; head < missionMap.getTrailSize(); head++) {
+            int index = missionMap.getTrail(head);
+            expand(index % missionMap.getWidth(), index / missionMap.getWidth());
+        }
+    }
+
+    /**
+     * 在(x, y)放置第c个候选色块，同时标记该色块已使用并更新线段的偏离值
+     *
+     * @param x 横向坐标
+     * @param y 纵向坐标
+     * @param c 候选色块下标
+     */
+    private void fill(int x, int y, int c) {
+        candidateIndex.use(c);
+        missionMap.fill(x, y, c, candidateIndex.getColor(c));
+        segmentIndex.place(missionMap, missionMap.index(x, y));
+        degreeQueue.remove(missionMap.index(x, y));
+    }
+
+    /**
+     * 回溯：释放mark之后填充的格子所使用的候选色块，并将这些格子原地恢复为BLANK
+     *
+     * @param mark 回溯到的trail位置
+     */
+    private void rollback(int mark) {
+        for (int t = mark; t < missionMap.getTrailSize(); t++) {
+            int index = missionMap.getTrail(t);
+            candidateIndex.release(missionMap.getCandidate(index % missionMap.getWidth(), index / missionMap.getWidth()));
+            degreeQueue.restore(index);
+        }
+        segmentIndex.rollback(missionMap, mark);
+        missionMap.rollback(mark);
+    }
+
+    /**
+     * 对(i, j)位置的行列进行扩展
+     *
+     * @param i 横向坐标i
+     * @param j 纵向坐标
+     */
+    private void expand(int i, int j) {
+        expandCalls++;
+        int index = missionMap.index(i, j);
+        expandSegment(segmentIndex.getHorizontal(index));
+        expandSegment(segmentIndex.getVertical(index));
+    }
+
+    /**
+     * 线段中已放置的色块不少于两个时，以第一个与最后一个已放置的色块为两端线性插值，
+     * 计算每个BLANK期望的颜色，并放置偏离值最小的未使用候选色块
+     *
+     * @param segment 线段编号
+     */
+    private void expandSegment(int segment) {
+        if (segmentIndex.getPlaced(segment) < 2) {
+            return;
+        }
+        int start = segmentIndex.getStart(segment);
+        int step = segmentIndex.getStep(segment);
+        int first = segmentIndex.getFirstPlaced(segment);
+        int last = segmentIndex.getLastPlaced(segment);
+        int firstColor = missionMap.getColor(first % missionMap.getWidth(), first / missionMap.getWidth());
+        int lastColor = missionMap.getColor(last % missionMap.getWidth(), last / missionMap.getWidth());
+        int left = (first - start) / step;
+        int right = (last - start) / step;
+        double deltaR = 1.0 * (ImageRGB.r(lastColor) - ImageRGB.r(firstColor)) / (right - left);
+        double deltaG = 1.0 * (ImageRGB.g(lastColor) - ImageRGB.g(firstColor)) / (right - left);
+        double deltaB = 1.0 * (ImageRGB.b(lastColor) - ImageRGB.b(firstColor)) / (right - left);
+        for (int l = 0; l < segmentIndex.getLength(segment); l++) {
+            int x = (start + l * step) % missionMap.getWidth();
+            int y = (start + l * step) / missionMap.getWidth();
+            if (missionMap.getType(x, y) == MissionMap.Type.BLANK) {
+                double expectedR = ImageRGB.r(firstColor) + (l - left) * deltaR;
+                double expectedG = ImageRGB.g(firstColor) + (l - left) * deltaG;
+                double expectedB = ImageRGB.b(firstColor) + (l - left) * deltaB;
+                int minimalColor = candidateIndex.nearest(expectedR, expectedG, expectedB);
+                fill(x, y, minimalColor);
+                inferredCells++;
+            }
+        }
+    }
+
+    /**
+     * 计算(i, j)位置的期望颜色，结果写入expected
+     * 推导结束后，BLANK所在的行列中最多各有一个已放置的色块（否则已被expand推导填充），
+     * 因此期望颜色取这些色块颜色的平均值
+     *
+     * @param i 横向坐标
+     * @param j 纵向坐标
+     * @return 所在行列中是否有已放置的色块，没有时期望颜色无意义
+     */
+    private boolean expectedColor(int i, int j) {
+        expected[0] = expected[1] = expected[2] = 0;
+        int index = missionMap.index(i, j);
+        int anchors = addAnchors(segmentIndex.getHorizontal(index), index) + addAnchors(segmentIndex.getVertical(index), index);
+        for (int k = 0; k < expected.length && anchors > 0; k++) {
+            expected[k] /= anchors;
+        }
+        return anchors > 0;
+    }
+
+    /**
+     * 把线段中index两侧最远的已放置色块累加到expected
+     *
+     * @return 累加的色块数量
+     */
+    private int addAnchors(int segment, int index) {
+        int anchors = 0;
+        int first = segmentIndex.getFirstPlaced(segment);
+        int last = segmentIndex.getLastPlaced(segment);
+        if (first >= 0 && first < index) {
+            addAnchor(first);
+            anchors++;
+        }
+        if (last > index) {
+            addAnchor(last);
+            anchors++;
+        }
+        return anchors;
+    }
+
+    private void addAnchor(int index) {
+        int rgb = missionMap.getColor(index % missionMap.getWidth(), index / missionMap.getWidth());
+        expected[0] += ImageRGB.r(rgb);
+        expected[1] += ImageRGB.g(rgb);
+        expected[2] += ImageRGB.b(rgb);
+    }
+}
@@ -0,0 +1,74 @@
+package cn.sissors.blendoku;
+
+/**
+ * 一个关卡：地图、候选色块，生成的关卡还有生成时埋入的解
+ * <p>
+ * 埋入的解是每个BLANK原本的渐变颜色，它的偏离值是最优解偏离值的上界，用于回归检查：
+ * 求解器的结果不能比它差，完整搜索的结果应当保持不变。从截图解析的关卡没有名称与埋入的解
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class Puzzle {
+    private final String name;
+    private final MissionMap missionMap;
+    private final int[] candidateColors;
+    private final MissionMap solution;
+    private final double deviation;
+
+    /**
+     * @param name            关卡名称，也是输出文件名
+     * @param missionMap      地图，只包含FIXED与BLANK
+     * @param candidateColors 候选色块的sRGB，顺序与截图中候选色块的解析顺序一致
+     * @param solution        埋入的解，BLANK都已放置为FILLED
+     * @param deviation       埋入的解的偏离值
+     */
+    public Puzzle(String name, MissionMap missionMap, int[] candidateColors, MissionMap solution, double deviation) {
+        this.name = name;
+        this.missionMap = missionMap;
+        this.candidateColors = candidateColors;
+        this.solution = solution;
+        this.deviation = deviation;
+    }
+
+    /**
+     * 从截图解析的关卡，名称与埋入的解为null，偏离值为NaN
+     *
+     * @param missionMap      地图，只包含FIXED与BLANK
+     * @param candidateColors 候选色块的sRGB，顺序与截图中候选色块的解析顺序一致
+     */
+    public Puzzle(MissionMap missionMap, int[] candidateColors) {
+        this(null, missionMap, candidateColors, null, Double.NaN);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MissionMap getMissionMap() {
+        return missionMap;
+    }
+
+    public int[] getCandidateColors() {
+        return candidateColors;
+    }
+
+    public MissionMap getSolution() {
+        return solution;
+    }
+
+    public double getDeviation() {
+        return deviation;
+    }
+
+    /**
+     * 输出为一行JSON：board见Json.board，fixed为FIXED格子的[x, y, 颜色]，solution为埋入的解中每个BLANK的[x, y, 候选色块下标]
+     *
+     * @return JSON字符串
+     */
+    public String toJson() {
+        return "{\"name\":" + (name != null ? Json.string(name) : "null") + ",\"width\":" + missionMap.getWidth() + ",\"height\":" + missionMap.getHeight()
+                + ",\"board\":" + Json.board(missionMap) + ",\"fixed\":" + Json.fixed(missionMap) + ",\"candidates\":" + Json.colors(candidateColors)
+                + ",\"solution\":" + (solution != null ? Json.assignment(solution) : "null") + ",\"deviation\":" + Json.number(deviation) + "}";
+    }
+}
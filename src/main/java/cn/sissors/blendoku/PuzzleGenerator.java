@@ -0,0 +1,352 @@
+package cn.sissors.blendoku;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 按Blendoku解析的截图布局生成关卡截图，用于规模测试与回归测试
+ * <p>
+ * 截图为黑色背景，CANDIDATE_BOTTOM_BOUND以上是候选区，之下到MISSION_MAP_BOTTOM_BOUND是地图区：
+ * 候选色块按列优先排成若干行，彼此留出间隔；FIXED为整块的渐变色块，BLANK只画出四个灰色的角标。
+ * 地图的颜色是一个线性渐变 c(x, y) = c0 + x * u + y * v，因此每一行、每一列都是渐变；
+ * 候选色块是BLANK原本的颜色加上诱饵色（某个真实颜色附近的颜色），顺序随机打乱。
+ * 地图或候选色块放不下时缩小色块的边长，但不小于成簇检查要求的大小。
+ * 相同的种子与参数总是生成相同的关卡。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class PuzzleGenerator {
+    // 截图大小，与采集的截图一致
+    private final static int IMAGE_WIDTH = 2048;
+    private final static int IMAGE_HEIGHT = 1536;
+    // 截图中色块的边长
+    private final static int TILE_SIZE = 147;
+    // 色块的最小边长，需要容纳正负COLOR_BLOCK_CHECK_BOUND的成簇检查与间隔
+    private final static int MIN_TILE_SIZE = 2 * Blendoku.COLOR_BLOCK_CHECK_BOUND + 4;
+    // 候选区与地图区的边距
+    private final static int MARGIN = 40;
+    // 候选色块之间的间隔，避免颜色相同的相邻候选色块连成一块
+    private final static int CANDIDATE_GAP = 2;
+    // 空白格角标的内缩、臂长与线宽相对色块边长的比例，截图中分别为8、33、6像素
+    private final static double CORNER_INSET = 8.0 / TILE_SIZE;
+    private final static double CORNER_ARM = 33.0 / TILE_SIZE;
+    private final static double CORNER_THICKNESS = 6.0 / TILE_SIZE;
+    // 角标的最小线宽，需要容纳正负BLANK_CORNER_CHECK_BOUND的成簇检查
+    private final static int MIN_CORNER_THICKNESS = 2 * Blendoku.BLANK_CORNER_CHECK_BOUND + 2;
+    // 渐变颜色每个分量的取值范围，远离背景黑色与空白格的灰色
+    private final static int MIN_CHANNEL = 72;
+    private final static int MAX_CHANNEL = 240;
+    // 相邻格子在变化最大的分量上的最小差值，保证相邻的FIXED色块颜色不同
+    private final static double MIN_STEP = 3;
+    // 诱饵色与真实颜色在每个分量上的最大差值
+    private final static int DECOY_SPREAD = 12;
+    // 生成渐变的最大尝试次数
+    private final static int MAX_ATTEMPTS = 1000;
+
+    /**
+     * 地图形状
+     */
+    public enum Shape {
+        // 整个矩形
+        RECTANGLE,
+        // 若干横竖笔画的并集，笔画长度即渐变长度
+        STROKES
+    }
+
+    private final Random random;
+
+    /**
+     * @param seed 随机种子
+     */
+    public PuzzleGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 生成一个关卡
+     *
+     * @param name       关卡名称
+     * @param width      地图宽度
+     * @param height     地图高度
+     * @param shape      地图形状
+     * @param minLength  STROKES笔画的最小长度
+     * @param maxLength  STROKES笔画的最大长度
+     * @param fixedRatio 每个格子为FIXED的概率
+     * @param decoys     诱饵色数量
+     * @return 生成的关卡，地图裁剪到有格子的范围
+     */
+    public Puzzle generate(String name, int width, int height, Shape shape, int minLength, int maxLength, double fixedRatio, int decoys) {
+        boolean[][] occupied = shape == Shape.RECTANGLE ? fullShape(width, height) : strokeShape(width, height, minLength, maxLength);
+        int left = width, right = -1, top = height, bottom = -1;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (occupied[x][y]) {
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                    top = Math.min(top, y);
+                    bottom = Math.max(bottom, y);
+                }
+            }
+        }
+        MissionMap missionMap = new MissionMap(right - left + 1, bottom - top + 1);
+        int[][] colors = gradient(missionMap.getWidth(), missionMap.getHeight());
+        int cells = 0, fixed = 0;
+        for (int x = 0; x < missionMap.getWidth(); x++) {
+            for (int y = 0; y < missionMap.getHeight(); y++) {
+                if (occupied[x + left][y + top]) {
+                    boolean isFixed = random.nextDouble() < fixedRatio;
+                    missionMap.setPoint(x, y, isFixed ? MissionMap.Type.FIXED : MissionMap.Type.BLANK, new ColorRGB(colors[x][y]));
+                    cells++;
+                    fixed += isFixed ? 1 : 0;
+                }
+            }
+        }
+        if (fixed == cells || (fixed == 0 && fixedRatio > 0)) {
+            // 至少保留一个BLANK，fixedRatio大于0时至少保留一个FIXED
+            flipRandomCell(missionMap, colors, fixed == cells ? MissionMap.Type.FIXED : MissionMap.Type.BLANK);
+        }
+        int blanks = 0;
+        for (int index = 0; index < missionMap.getWidth() * missionMap.getHeight(); index++) {
+            blanks += missionMap.getType(index % missionMap.getWidth(), index / missionMap.getWidth()) == MissionMap.Type.BLANK ? 1 : 0;
+        }
+        int[] candidateColors = new int[blanks + decoys];
+        int[] order = shuffledOrder(candidateColors.length);
+        MissionMap solution = MissionMap.clone(missionMap);
+        int k = 0;
+        for (int x = 0; x < missionMap.getWidth(); x++) {
+            for (int y = 0; y < missionMap.getHeight(); y++) {
+                if (missionMap.getType(x, y) == MissionMap.Type.BLANK) {
+                    candidateColors[order[k]] = colors[x][y];
+                    solution.fill(x, y, order[k], colors[x][y]);
+                    k++;
+                }
+            }
+        }
+        for (; k < candidateColors.length; k++) {
+            candidateColors[order[k]] = decoy(candidateColors[order[random.nextInt(blanks)]]);
+        }
+        double deviation = new SegmentIndex(solution, new Zobrist(solution.getWidth() * solution.getHeight(), candidateColors.length)).getDeviation();
+        return new Puzzle(name, missionMap, candidateColors, solution, deviation);
+    }
+
+    private boolean[][] fullShape(int width, int height) {
+        boolean[][] occupied = new boolean[width][height];
+        for (boolean[] column : occupied) {
+            Arrays.fill(column, true);
+        }
+        return occupied;
+    }
+
+    /**
+     * 随机放置横竖笔画直到覆盖一半的格子，前两笔分别为横向与纵向，保证地图在两个方向上都有渐变
+     */
+    private boolean[][] strokeShape(int width, int height, int minLength, int maxLength) {
+        boolean[][] occupied = new boolean[width][height];
+        int covered = 0;
+        for (int stroke = 0; covered < width * height / 2 && stroke < width * height; stroke++) {
+            boolean horizontal = stroke == 0 || (stroke > 1 && random.nextBoolean());
+            int limit = horizontal ? width : height;
+            int length = Math.min(limit, minLength + random.nextInt(Math.max(1, maxLength - minLength + 1)));
+            int x = random.nextInt(horizontal ? width - length + 1 : width);
+            int y = random.nextInt(horizontal ? height : height - length + 1);
+            for (int l = 0; l < length; l++) {
+                int cx = horizontal ? x + l : x;
+                int cy = horizontal ? y : y + l;
+                covered += occupied[cx][cy] ? 0 : 1;
+                occupied[cx][cy] = true;
+            }
+        }
+        return occupied;
+    }
+
+    /**
+     * 随机生成线性渐变，所有格子的颜色分量都在[MIN_CHANNEL, MAX_CHANNEL]之内，且相邻格子颜色不同
+     *
+     * @return colors[x][y]为(x, y)的sRGB
+     */
+    private int[][] gradient(int width, int height) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            double[] origin = new double[3];
+            double[] u = new double[3];
+            double[] v = new double[3];
+            double maxU = 0, maxV = 0;
+            boolean feasible = true;
+            for (int c = 0; c < 3 && feasible; c++) {
+                double span = MAX_CHANNEL - MIN_CHANNEL;
+                u[c] = width > 1 ? (random.nextDouble() * 2 - 1) * span / (width - 1) : 0;
+                v[c] = height > 1 ? (random.nextDouble() * 2 - 1) * span / (height - 1) : 0;
+                maxU = Math.max(maxU, Math.abs(u[c]));
+                maxV = Math.max(maxV, Math.abs(v[c]));
+                double low = Math.min(0, u[c] * (width - 1)) + Math.min(0, v[c] * (height - 1));
+                double high = Math.max(0, u[c] * (width - 1)) + Math.max(0, v[c] * (height - 1));
+                feasible = high - low <= MAX_CHANNEL - MIN_CHANNEL;
+                origin[c] = MIN_CHANNEL - low + random.nextDouble() * (MAX_CHANNEL - MIN_CHANNEL - (high - low));
+            }
+            if (!feasible || (width > 1 && maxU < MIN_STEP) || (height > 1 && maxV < MIN_STEP)) {
+                continue;
+            }
+            int[][] colors = new int[width][height];
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    colors[x][y] = new ColorRGB((int) Math.round(origin[0] + x * u[0] + y * v[0]),
+                            (int) Math.round(origin[1] + x * u[1] + y * v[1]),
+                            (int) Math.round(origin[2] + x * u[2] + y * v[2])).getRGB();
+                }
+            }
+            return colors;
+        }
+        throw new IllegalStateException("no gradient fits a " + width + "x" + height + " board");
+    }
+
+    private void flipRandomCell(MissionMap missionMap, int[][] colors, MissionMap.Type from) {
+        while (true) {
+            int x = random.nextInt(missionMap.getWidth());
+            int y = random.nextInt(missionMap.getHeight());
+            if (missionMap.getType(x, y) == from) {
+                MissionMap.Type to = from == MissionMap.Type.FIXED ? MissionMap.Type.BLANK : MissionMap.Type.FIXED;
+                missionMap.setPoint(x, y, to, new ColorRGB(colors[x][y]));
+                return;
+            }
+        }
+    }
+
+    private int[] shuffledOrder(int n) {
+        int[] order = new int[n];
+        for (int k = 0; k < n; k++) {
+            order[k] = k;
+        }
+        for (int k = n - 1; k > 0; k--) {
+            int l = random.nextInt(k + 1);
+            int t = order[k];
+            order[k] = order[l];
+            order[l] = t;
+        }
+        return order;
+    }
+
+    /**
+     * @return 在rgb每个分量上随机偏移不超过DECOY_SPREAD的颜色
+     */
+    private int decoy(int rgb) {
+        return new ColorRGB(clamp(ImageRGB.r(rgb) + random.nextInt(2 * DECOY_SPREAD + 1) - DECOY_SPREAD),
+                clamp(ImageRGB.g(rgb) + random.nextInt(2 * DECOY_SPREAD + 1) - DECOY_SPREAD),
+                clamp(ImageRGB.b(rgb) + random.nextInt(2 * DECOY_SPREAD + 1) - DECOY_SPREAD)).getRGB();
+    }
+
+    private int clamp(int channel) {
+        return Math.max(MIN_CHANNEL, Math.min(MAX_CHANNEL, channel));
+    }
+
+    /**
+     * 按截图布局绘制关卡
+     *
+     * @param puzzle 关卡
+     * @return 截图
+     */
+    public static BufferedImage render(Puzzle puzzle) {
+        BufferedImage image = new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] candidateColors = puzzle.getCandidateColors();
+        int tile = TILE_SIZE, rows = 1;
+        for (; tile >= MIN_TILE_SIZE; tile--) {
+            int columns = (IMAGE_WIDTH - 2 * MARGIN) / tile;
+            rows = (candidateColors.length + columns - 1) / columns;
+            if (rows * tile <= Blendoku.CANDIDATE_BOTTOM_BOUND - 2 * MARGIN) {
+                break;
+            }
+        }
+        if (tile < MIN_TILE_SIZE) {
+            throw new IllegalArgumentException("too many candidates: " + candidateColors.length);
+        }
+        // 候选色块按列优先排列，与解析时按锚点列优先排序的顺序一致
+        int columns = (candidateColors.length + rows - 1) / rows;
+        int left = (IMAGE_WIDTH - columns * tile) / 2;
+        for (int k = 0; k < candidateColors.length; k++) {
+            fillRect(image, left + k / rows * tile, MARGIN + k % rows * tile, tile - CANDIDATE_GAP, tile - CANDIDATE_GAP, candidateColors[k]);
+        }
+        MissionMap missionMap = puzzle.getMissionMap();
+        int pitch = Math.min(TILE_SIZE, Math.min((IMAGE_WIDTH - 2 * MARGIN) / missionMap.getWidth(),
+                (Blendoku.MISSION_MAP_BOTTOM_BOUND - Blendoku.CANDIDATE_BOTTOM_BOUND - 2 * MARGIN) / missionMap.getHeight()));
+        if (pitch < MIN_TILE_SIZE) {
+            throw new IllegalArgumentException("board too large: " + missionMap.getWidth() + "x" + missionMap.getHeight());
+        }
+        int inset = (int) Math.round(pitch * CORNER_INSET);
+        int thickness = Math.max(MIN_CORNER_THICKNESS, (int) Math.round(pitch * CORNER_THICKNESS));
+        int arm = Math.max(2 * thickness, (int) Math.round(pitch * CORNER_ARM));
+        int originX = (IMAGE_WIDTH - missionMap.getWidth() * pitch) / 2;
+        int originY = Blendoku.CANDIDATE_BOTTOM_BOUND + MARGIN;
+        for (int x = 0; x < missionMap.getWidth(); x++) {
+            for (int y = 0; y < missionMap.getHeight(); y++) {
+                int tileX = originX + x * pitch, tileY = originY + y * pitch;
+                if (missionMap.getType(x, y) == MissionMap.Type.FIXED) {
+                    fillRect(image, tileX, tileY, pitch, pitch, missionMap.getColor(x, y));
+                } else if (missionMap.getType(x, y) == MissionMap.Type.BLANK) {
+                    int x1 = tileX + inset, y1 = tileY + inset;
+                    int x2 = tileX + pitch - inset - arm, y2 = tileY + pitch - inset - arm;
+                    int grey = Blendoku.GREY.getRGB();
+                    drawCorner(image, x1, y1, arm, thickness, true, true, grey);
+                    drawCorner(image, x2, y1, arm, thickness, false, true, grey);
+                    drawCorner(image, x1, y2, arm, thickness, true, false, grey);
+                    drawCorner(image, x2, y2, arm, thickness, false, false, grey);
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 在边长为arm的方格内画L形角标，left/top表示竖臂/横臂贴着方格的左边/上边
+     */
+    private static void drawCorner(BufferedImage image, int x, int y, int arm, int thickness, boolean left, boolean top, int rgb) {
+        fillRect(image, x, top ? y : y + arm - thickness, arm, thickness, rgb);
+        fillRect(image, left ? x : x + arm - thickness, y, thickness, arm, rgb);
+    }
+
+    private static void fillRect(BufferedImage image, int x, int y, int width, int height, int rgb) {
+        for (int i = x; i < x + width; i++) {
+            for (int j = y; j < y + height; j++) {
+                image.setRGB(i, j, rgb);
+            }
+        }
+    }
+
+    /**
+     * 写出截图与同名的JSON描述
+     *
+     * @param puzzle    关卡
+     * @param directory 输出目录
+     */
+    public static void write(Puzzle puzzle, File directory) throws IOException {
+        ImageIO.write(render(puzzle), "png", new File(directory, puzzle.getName() + ".png"));
+        try (PrintWriter writer = new PrintWriter(new File(directory, puzzle.getName() + ".json"), StandardCharsets.UTF_8.name())) {
+            writer.println(puzzle.toJson());
+        }
+    }
+
+    /**
+     * 生成3*3到12*12的回归语料：每种大小一个RECTANGLE与一个STROKES关卡，FIXED概率0.25，诱饵色数量为边长的一半
+     * 用法：PuzzleGenerator 输出目录 [种子]
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "corpus");
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 2019;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        for (int size = 3; size <= 12; size++) {
+            for (Shape shape : Shape.values()) {
+                String name = String.format("%s-%02dx%02d", shape.name().toLowerCase(), size, size);
+                PuzzleGenerator generator = new PuzzleGenerator(seed * 31 + size * 2 + shape.ordinal());
+                Puzzle puzzle = generator.generate(name, size, size, shape, 3, size, 0.25, size / 2);
+                write(puzzle, directory);
+                System.out.println(name + ": " + puzzle.getCandidateColors().length + " candidates, deviation " + puzzle.getDeviation());
+            }
+        }
+    }
+}
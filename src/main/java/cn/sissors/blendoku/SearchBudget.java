@@ -0,0 +1,57 @@
+package cn.sissors.blendoku;
+
+/**
+ * 搜索的时间预算与取消标记，可以被多个搜索线程共享
+ * <p>
+ * 搜索在每个节点调用isExhausted()，超过截止时间或被取消后尽快返回，此时的最优解不一定是最优的。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class SearchBudget {
+    private final long deadline;
+    private volatile boolean cancelled;
+    private volatile boolean exhausted;
+
+    private SearchBudget(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return 没有时间限制、只能被取消的预算
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(Long.MAX_VALUE);
+    }
+
+    /**
+     * @param millis 从现在开始的时间预算，单位毫秒
+     */
+    public static SearchBudget withTimeout(long millis) {
+        return new SearchBudget(System.nanoTime() + millis * 1000000L);
+    }
+
+    /**
+     * 取消搜索，可以在任意线程中调用
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 检查预算是否已经用完，用完之后一直返回true
+     */
+    public boolean isExhausted() {
+        if (!exhausted && (cancelled || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0))) {
+            exhausted = true;
+        }
+        return exhausted;
+    }
+
+    /**
+     * @return 搜索是否因为预算用完而提前结束，不再检查时间
+     */
+    public boolean isInterrupted() {
+        return exhausted;
+    }
+}
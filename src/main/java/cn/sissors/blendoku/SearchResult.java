@@ -0,0 +1,54 @@
+package cn.sissors.blendoku;
+
+/**
+ * 一次搜索的结果：找到的最优解、偏离值、搜索空间是否已经穷尽，以及搜索的计数与耗时
+ * <p>
+ * 搜索空间是经过推导限制的搜索树：expand把线段中的BLANK直接放置为与插值颜色最近的候选色块，不作为分支，
+ * 因此穷尽搜索空间只说明这棵树中没有更优的解，不说明结果是全局最优解
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class SearchResult {
+    private final MissionMap missionMap;
+    private final double deviation;
+    private final boolean exhausted;
+    private final SolverMetrics metrics;
+
+    public SearchResult(MissionMap missionMap, double deviation, boolean exhausted, SolverMetrics metrics) {
+        this.missionMap = missionMap;
+        this.deviation = deviation;
+        this.exhausted = exhausted;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return 找到的最优解，预算用完前没有找到任何解时为null
+     */
+    public MissionMap getMissionMap() {
+        return missionMap;
+    }
+
+    /**
+     * @return 最优解的偏离值，没有解时为正无穷
+     */
+    public double getDeviation() {
+        return deviation;
+    }
+
+    /**
+     * @return 搜索是否完整结束，即推导限制后的搜索空间已经穷尽，不代表全局最优；
+     * 局部搜索、截断过的束搜索、近似等价类与预算用完时为false
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    public long getSearchedNodes() {
+        return metrics.getSearchedNodes();
+    }
+
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,381 @@
+package cn.sissors.blendoku;
+
+/**
+ * 地图中所有行列线段的索引与偏离值缓存
+ * <p>
+ * 线段是一行或一列中连续的非NULL格子。每个格子最多属于一条纵向线段和一条横向线段，
+ * 只有线段内所有格子都已放置（没有BLANK）时，线段的偏离值才确定下来并计入总和。
+ * 放置一个格子只会影响它所在的两条线段，因此每次更新的代价是O(线段长度)，总偏离值随时可以O(1)读取。
+ * 回溯严格按照MissionMap的trail逆序进行，总偏离值直接恢复为放置前保存的值，不会积累浮点误差。
+ * 每条线段还记录第一个与最后一个已放置（FIXED或FILLED）的格子，代替沿行列逐格查找边界，回溯时同样按trail恢复。
+ * 同时增量维护状态的Zobrist哈希值，线段放置完时把两条线段都已放置完的格子换成只与位置有关的键；不需要哈希值时可以不给Zobrist。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class SegmentIndex {
+    private int width;
+    private int count;
+    // 线段起点的格子下标
+    private int[] start;
+    // 线段长度
+    private int[] length;
+    // 线段中相邻两格的下标差，纵向为width，横向为1
+    private int[] step;
+    // 格子所在的纵向/横向线段编号，NULL格子为-1
+    private int[] vertical;
+    private int[] horizontal;
+    // 线段中剩余的BLANK数量
+    private int[] blanks;
+    // 线段中第一个与最后一个已放置的格子下标，没有时为-1
+    private int[] firstPlaced;
+    private int[] lastPlaced;
+    // 第k次填充之前所在纵向/横向线段的firstPlaced与lastPlaced，下标为2k与2k+1
+    private int[] firstBefore;
+    private int[] lastBefore;
+    // 已放置完的线段的偏离值，其余为0
+    private double[] cost;
+    private double deviation;
+    // 第k次填充之前的总偏离值，下标与MissionMap的trail一致
+    private double[] deviationBefore;
+    // 为null时不维护哈希值
+    private Zobrist zobrist;
+    private long hash;
+    // 第k次填充之前的哈希值，下标与MissionMap的trail一致，不维护哈希值时为null
+    private long[] hashBefore;
+
+    /**
+     * 只维护偏离值，不维护哈希值，getHash()始终为0
+     *
+     * @param missionMap 地图MissionMap
+     */
+    public SegmentIndex(MissionMap missionMap) {
+        this(missionMap, null);
+    }
+
+    /**
+     * @param missionMap 地图MissionMap
+     * @param zobrist    状态哈希的随机键，为null时不维护哈希值
+     */
+    public SegmentIndex(MissionMap missionMap, Zobrist zobrist) {
+        reset(missionMap, zobrist);
+    }
+
+    /**
+     * 改为另一张地图重新建立索引；数组不够大时才重新分配，用于SolverArena复用同一个索引
+     *
+     * @param missionMap 地图MissionMap
+     * @param zobrist    状态哈希的随机键，为null时不维护哈希值
+     */
+    public void reset(MissionMap missionMap, Zobrist zobrist) {
+        this.zobrist = zobrist;
+        this.width = missionMap.getWidth();
+        int size = missionMap.getWidth() * missionMap.getHeight();
+        if (vertical == null || vertical.length < size) {
+            // 每个格子最多开始一条纵向线段与一条横向线段，线段数量不超过size * 2
+            this.start = new int[size * 2];
+            this.length = new int[size * 2];
+            this.step = new int[size * 2];
+            this.vertical = new int[size];
+            this.horizontal = new int[size];
+            this.blanks = new int[size * 2];
+            this.firstPlaced = new int[size * 2];
+            this.lastPlaced = new int[size * 2];
+            this.firstBefore = new int[size * 2];
+            this.lastBefore = new int[size * 2];
+            this.cost = new double[size * 2];
+            this.deviationBefore = new double[size];
+            this.hashBefore = null;
+        }
+        this.count = 0;
+        for (int i = 0; i < missionMap.getWidth(); i++) {
+            for (int j = 0; j < missionMap.getHeight(); j++) {
+                vertical[missionMap.index(i, j)] = -1;
+                if (missionMap.getType(i, j) != MissionMap.Type.NULL) {
+                    int y = j;
+                    for (; y < missionMap.getHeight() && missionMap.getType(i, y) != MissionMap.Type.NULL; y++) {
+                        vertical[missionMap.index(i, y)] = count;
+                    }
+                    addSegment(missionMap.index(i, j), y - j, width);
+                    j = y - 1;
+                }
+            }
+        }
+        for (int j = 0; j < missionMap.getHeight(); j++) {
+            for (int i = 0; i < missionMap.getWidth(); i++) {
+                horizontal[missionMap.index(i, j)] = -1;
+                if (missionMap.getType(i, j) != MissionMap.Type.NULL) {
+                    int x = i;
+                    for (; x < missionMap.getWidth() && missionMap.getType(x, j) != MissionMap.Type.NULL; x++) {
+                        horizontal[missionMap.index(x, j)] = count;
+                    }
+                    addSegment(missionMap.index(i, j), x - i, 1);
+                    i = x - 1;
+                }
+            }
+        }
+        this.deviation = 0;
+        for (int s = 0; s < count; s++) {
+            blanks[s] = 0;
+            cost[s] = 0;
+            firstPlaced[s] = lastPlaced[s] = -1;
+            for (int k = 0; k < length[s]; k++) {
+                int index = start[s] + k * step[s];
+                if (missionMap.getType(index % width, index / width) == MissionMap.Type.BLANK) {
+                    blanks[s]++;
+                } else {
+                    firstPlaced[s] = firstPlaced[s] < 0 ? index : firstPlaced[s];
+                    lastPlaced[s] = index;
+                }
+            }
+            if (blanks[s] == 0) {
+                cost[s] = evaluate(missionMap, s);
+                deviation += cost[s];
+            }
+        }
+        this.hash = 0;
+        if (zobrist == null) {
+            return;
+        }
+        if (hashBefore == null) {
+            this.hashBefore = new long[deviationBefore.length];
+        }
+        for (int index = 0; index < size; index++) {
+            int candidate = missionMap.getCandidate(index % width, index / width);
+            if (candidate >= 0) {
+                hash ^= zobrist.candidate(candidate);
+                hash ^= isSettled(index) ? zobrist.settled(index) : zobrist.cell(index, candidate);
+            }
+        }
+    }
+
+    private SegmentIndex(SegmentIndex other) {
+        this.width = other.width;
+        this.count = other.count;
+        this.start = other.start;
+        this.length = other.length;
+        this.step = other.step;
+        this.vertical = other.vertical;
+        this.horizontal = other.horizontal;
+        this.blanks = other.blanks.clone();
+        this.firstPlaced = other.firstPlaced.clone();
+        this.lastPlaced = other.lastPlaced.clone();
+        this.firstBefore = other.firstBefore.clone();
+        this.lastBefore = other.lastBefore.clone();
+        this.cost = other.cost.clone();
+        this.deviation = other.deviation;
+        this.deviationBefore = other.deviationBefore.clone();
+        this.zobrist = other.zobrist;
+        this.hash = other.hash;
+        this.hashBefore = other.hashBefore != null ? other.hashBefore.clone() : null;
+    }
+
+    /**
+     * 复制一份SegmentIndex，线段结构共享，BLANK数量与偏离值各自独立，需与MissionMap.clone得到的地图配合使用；other之后不能再reset
+     */
+    public static SegmentIndex clone(SegmentIndex other) {
+        return new SegmentIndex(other);
+    }
+
+    private void addSegment(int first, int l, int d) {
+        start[count] = first;
+        length[count] = l;
+        step[count] = d;
+        count++;
+    }
+
+    /**
+     * 格子被填充之后调用，更新所在两条线段的BLANK数量，线段放置完时计入其偏离值
+     *
+     * @param missionMap 地图MissionMap，index必须是刚刚fill的格子
+     * @param index      格子下标
+     */
+    public void place(MissionMap missionMap, int index) {
+        deviationBefore[missionMap.getTrailSize() - 1] = deviation;
+        if (zobrist != null) {
+            hashBefore[missionMap.getTrailSize() - 1] = hash;
+            int candidate = missionMap.getCandidate(index % width, index / width);
+            hash ^= zobrist.candidate(candidate) ^ zobrist.cell(index, candidate);
+        }
+        placeSegment(missionMap, vertical[index], index, (missionMap.getTrailSize() - 1) * 2);
+        placeSegment(missionMap, horizontal[index], index, (missionMap.getTrailSize() - 1) * 2 + 1);
+    }
+
+    private void placeSegment(MissionMap missionMap, int segment, int index, int undo) {
+        firstBefore[undo] = firstPlaced[segment];
+        lastBefore[undo] = lastPlaced[segment];
+        if (firstPlaced[segment] < 0 || index < firstPlaced[segment]) {
+            firstPlaced[segment] = index;
+        }
+        if (index > lastPlaced[segment]) {
+            lastPlaced[segment] = index;
+        }
+        if (--blanks[segment] == 0) {
+            cost[segment] = evaluate(missionMap, segment);
+            deviation += cost[segment];
+            for (int k = 0; zobrist != null && k < length[segment]; k++) {
+                int cell = start[segment] + k * step[segment];
+                int candidate = missionMap.getCandidate(cell % width, cell / width);
+                if (candidate >= 0 && isSettled(cell)) {
+                    hash ^= zobrist.cell(cell, candidate) ^ zobrist.settled(cell);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 格子所在的两条线段是否都已放置完
+     */
+    private boolean isSettled(int index) {
+        return blanks[vertical[index]] == 0 && blanks[horizontal[index]] == 0;
+    }
+
+    /**
+     * 回溯到mark，必须在MissionMap.rollback(mark)之前调用
+     *
+     * @param missionMap 地图MissionMap
+     * @param mark       回溯到的trail位置
+     */
+    public void rollback(MissionMap missionMap, int mark) {
+        if (missionMap.getTrailSize() <= mark) {
+            return;
+        }
+        for (int t = missionMap.getTrailSize() - 1; t >= mark; t--) {
+            int index = missionMap.getTrail(t);
+            removeSegment(vertical[index], t * 2);
+            removeSegment(horizontal[index], t * 2 + 1);
+        }
+        deviation = deviationBefore[mark];
+        if (zobrist != null) {
+            hash = hashBefore[mark];
+        }
+    }
+
+    private void removeSegment(int segment, int undo) {
+        firstPlaced[segment] = firstBefore[undo];
+        lastPlaced[segment] = lastBefore[undo];
+        if (blanks[segment]++ == 0) {
+            cost[segment] = 0;
+        }
+    }
+
+    /**
+     * @return 所有已放置完的线段的偏离值总和，对未放置完的地图是其任意补全方式偏离值的下界
+     */
+    public double getDeviation() {
+        return deviation;
+    }
+
+    /**
+     * @return 当前状态的Zobrist哈希值，见Zobrist；不维护哈希值时为0
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @param segment 线段编号
+     * @return 线段放置完时的偏离值，未放置完时为0
+     */
+    public double getCost(int segment) {
+        return cost[segment];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return 格子所在的纵向线段编号，NULL格子为-1
+     */
+    public int getVertical(int index) {
+        return vertical[index];
+    }
+
+    /**
+     * @return 格子所在的横向线段编号，NULL格子为-1
+     */
+    public int getHorizontal(int index) {
+        return horizontal[index];
+    }
+
+    /**
+     * @return 线段起点的格子下标，线段中第k个格子为start + k * step
+     */
+    public int getStart(int segment) {
+        return start[segment];
+    }
+
+    public int getLength(int segment) {
+        return length[segment];
+    }
+
+    public int getStep(int segment) {
+        return step[segment];
+    }
+
+    /**
+     * @return 线段中已放置（FIXED或FILLED）的格子数量
+     */
+    public int getPlaced(int segment) {
+        return length[segment] - blanks[segment];
+    }
+
+    /**
+     * @return 线段中第一个已放置的格子下标，没有时为-1
+     */
+    public int getFirstPlaced(int segment) {
+        return firstPlaced[segment];
+    }
+
+    /**
+     * @return 线段中最后一个已放置的格子下标，没有时为-1
+     */
+    public int getLastPlaced(int segment) {
+        return lastPlaced[segment];
+    }
+
+    /**
+     * 计算一条线段的偏离值：
+     * 1. 取出两端色块的sRGB
+     * 2. 根据两端差值和线段长度，计算中间每个色块期望的sRGB
+     * 3. 遍历线段中每个色块的sRGB，计算期望与实际的偏离值并加和
+     *
+     * @param missionMap 地图MissionMap
+     * @param segment    线段编号
+     * @return 线段的偏离值
+     */
+    public double evaluate(MissionMap missionMap, int segment) {
+        return evaluate(missionMap, segment, -1, 0);
+    }
+
+    /**
+     * 假设index格子的颜色为rgb，计算一条线段的偏离值，用于线段中只剩index一个BLANK时试算
+     *
+     * @param missionMap 地图MissionMap
+     * @param segment    线段编号
+     * @param index      替换颜色的格子下标，-1表示不替换
+     * @param rgb        替换的sRGB
+     * @return 线段的偏离值
+     */
+    public double evaluate(MissionMap missionMap, int segment, int index, int rgb) {
+        int l = length[segment];
+        int first = start[segment];
+        int firstColor = first == index ? rgb : missionMap.getColor(first % width, first / width);
+        int last = first + (l - 1) * step[segment];
+        int lastColor = last == index ? rgb : missionMap.getColor(last % width, last / width);
+        double deltaR = 1.0 * (ImageRGB.r(lastColor) - ImageRGB.r(firstColor)) / l;
+        double deltaG = 1.0 * (ImageRGB.g(lastColor) - ImageRGB.g(firstColor)) / l;
+        double deltaB = 1.0 * (ImageRGB.b(lastColor) - ImageRGB.b(firstColor)) / l;
+        double deviation = 0;
+        for (int k = 0; k < l; k++) {
+            int cell = first + k * step[segment];
+            int actualColor = cell == index ? rgb : missionMap.getColor(cell % width, cell / width);
+            double dr = ImageRGB.r(firstColor) + k * deltaR - ImageRGB.r(actualColor);
+            double dg = ImageRGB.g(firstColor) + k * deltaG - ImageRGB.g(actualColor);
+            double db = ImageRGB.b(firstColor) + k * deltaB - ImageRGB.b(actualColor);
+            deviation = deviation + (dr * dr + dg * dg + db * db);
+        }
+        return deviation;
+    }
+}
@@ -0,0 +1,216 @@
+package cn.sissors.blendoku;
+
+import java.util.Arrays;
+
+/**
+ * 一个线程的可复用临时内存：像素数组、成簇检查的前缀和表、提取色块时洪泛填充的标记与栈，置换表，
+ * 以及搜索状态：地图副本、候选色块索引、线段索引、度队列、每层的分支数组、下界的指派工作数组与Zobrist随机键
+ * <p>
+ * 这些是解析与搜索中最大的几块内存（一张2048*1536的截图约需60MB），每次需要时按大小取出，
+ * 不够大时才重新分配，因此同一线程连续求解时几乎不再分配内存。
+ * 取出的数组与对象只在下一次取出同一种之前有效，不能在线程之间共享，见BlendokuSolver；
+ * 并行搜索的分支由MissionSearch.clone各自复制，不使用SolverArena。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class SolverArena {
+    private int[] pixels = new int[0];
+    private int[] horizontal = new int[0];
+    private int[] vertical = new int[0];
+    private boolean[] visited = new boolean[0];
+    private int[] stack = new int[0];
+    private TranspositionTable transpositionTable;
+    private int transpositionTableMegabytes;
+    private MissionMap missionMap;
+    private CandidateIndex candidateIndex;
+    private SegmentIndex segmentIndex;
+    private DegreeQueue degreeQueue;
+    private Zobrist zobrist;
+    private Assignment assignment;
+    private int[][] branchOrders = new int[0][0];
+    private double[][] branchBounds = new double[0][0];
+    private int[] candidates = new int[0];
+    private int[] path = new int[0];
+
+    /**
+     * @return 至少size个元素的像素数组，内容未定义
+     */
+    public int[] pixels(int size) {
+        if (pixels.length < size) {
+            pixels = new int[size];
+        }
+        return pixels;
+    }
+
+    /**
+     * @return 至少size个元素的横向前缀和表，内容未定义
+     */
+    public int[] horizontal(int size) {
+        if (horizontal.length < size) {
+            horizontal = new int[size];
+        }
+        return horizontal;
+    }
+
+    /**
+     * @return 至少size个元素的纵向前缀和表，内容未定义
+     */
+    public int[] vertical(int size) {
+        if (vertical.length < size) {
+            vertical = new int[size];
+        }
+        return vertical;
+    }
+
+    /**
+     * @return 至少size个元素、前size个为false的标记数组
+     */
+    public boolean[] visited(int size) {
+        if (visited.length < size) {
+            visited = new boolean[size];
+        } else {
+            Arrays.fill(visited, 0, size, false);
+        }
+        return visited;
+    }
+
+    /**
+     * @return 至少size个元素的栈，内容未定义
+     */
+    public int[] stack(int size) {
+        if (stack.length < size) {
+            stack = new int[size];
+        }
+        return stack;
+    }
+
+    /**
+     * @param megabytes 内存上限，单位MB，0为不使用置换表
+     * @return 清空的置换表，megabytes为0时为null
+     */
+    public TranspositionTable transpositionTable(int megabytes) {
+        if (megabytes <= 0) {
+            return null;
+        }
+        if (transpositionTable == null || transpositionTableMegabytes != megabytes) {
+            transpositionTable = new TranspositionTable(megabytes);
+            transpositionTableMegabytes = megabytes;
+        } else {
+            transpositionTable.clear();
+        }
+        return transpositionTable;
+    }
+
+    /**
+     * @return 与source相同的地图副本，搜索直接在其上放置色块
+     */
+    public MissionMap missionMap(MissionMap source) {
+        if (missionMap == null) {
+            missionMap = MissionMap.clone(source);
+        } else {
+            missionMap.copy(source);
+        }
+        return missionMap;
+    }
+
+    /**
+     * @return 这组候选色块的索引，所有色块都未使用
+     */
+    public CandidateIndex candidateIndex(int[] colors, double equivalenceDeviation) {
+        if (candidateIndex == null) {
+            candidateIndex = new CandidateIndex(colors, equivalenceDeviation);
+        } else {
+            candidateIndex.reset(colors, equivalenceDeviation);
+        }
+        return candidateIndex;
+    }
+
+    /**
+     * @return missionMap的线段索引
+     */
+    public SegmentIndex segmentIndex(MissionMap missionMap, Zobrist zobrist) {
+        if (segmentIndex == null) {
+            segmentIndex = new SegmentIndex(missionMap, zobrist);
+        } else {
+            segmentIndex.reset(missionMap, zobrist);
+        }
+        return segmentIndex;
+    }
+
+    /**
+     * @return missionMap的度队列
+     */
+    public DegreeQueue degreeQueue(MissionMap missionMap) {
+        if (degreeQueue == null) {
+            degreeQueue = new DegreeQueue(missionMap);
+        } else {
+            degreeQueue.reset(missionMap);
+        }
+        return degreeQueue;
+    }
+
+    /**
+     * 随机键由固定种子生成，只与容量有关，因此按见过的最大地图保留一份
+     *
+     * @return 至少能用于cells个格子与candidates个候选色块的Zobrist随机键
+     */
+    public Zobrist zobrist(int cells, int candidates) {
+        if (zobrist == null || !zobrist.covers(cells, candidates)) {
+            zobrist = zobrist == null ? new Zobrist(cells, candidates)
+                    : new Zobrist(Math.max(cells, zobrist.getCells()), Math.max(candidates, zobrist.getCandidates()));
+        }
+        return zobrist;
+    }
+
+    /**
+     * @return 至少rows * columns的指派工作数组，内容未定义
+     */
+    public Assignment assignment(int rows, int columns) {
+        if (assignment == null || assignment.getMaxRows() < rows || assignment.getMaxColumns() < columns) {
+            assignment = assignment == null ? new Assignment(rows, columns)
+                    : new Assignment(Math.max(rows, assignment.getMaxRows()), Math.max(columns, assignment.getMaxColumns()));
+        }
+        return assignment;
+    }
+
+    /**
+     * @return 至少rows * columns的每层分支顺序，内容未定义
+     */
+    public int[][] branchOrders(int rows, int columns) {
+        if (branchOrders.length < rows || (rows > 0 && branchOrders[0].length < columns)) {
+            branchOrders = new int[Math.max(rows, branchOrders.length)][Math.max(columns, branchOrders.length > 0 ? branchOrders[0].length : 0)];
+        }
+        return branchOrders;
+    }
+
+    /**
+     * @return 至少rows * columns的每层分支下界，内容未定义
+     */
+    public double[][] branchBounds(int rows, int columns) {
+        if (branchBounds.length < rows || (rows > 0 && branchBounds[0].length < columns)) {
+            branchBounds = new double[Math.max(rows, branchBounds.length)][Math.max(columns, branchBounds.length > 0 ? branchBounds[0].length : 0)];
+        }
+        return branchBounds;
+    }
+
+    /**
+     * @return 至少size个元素的候选色块下标数组，内容未定义
+     */
+    public int[] candidates(int size) {
+        if (candidates.length < size) {
+            candidates = new int[size];
+        }
+        return candidates;
+    }
+
+    /**
+     * @return 至少size个元素的搜索路径，内容未定义
+     */
+    public int[] path(int size) {
+        if (path.length < size) {
+            path = new int[size];
+        }
+        return path;
+    }
+}
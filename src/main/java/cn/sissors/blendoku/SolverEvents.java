@@ -0,0 +1,60 @@
+package cn.sissors.blendoku;
+
+/**
+ * 每个关卡解析与搜索结束时提交的JFR事件：cn.sissors.blendoku.Parse与cn.sissors.blendoku.Search
+ * <p>
+ * 事件类引用jdk.jfr，放在单独的源码目录src/main/jfr（FlightRecorderEvents），只在JDK 11及以上构建时编译；
+ * 主代码按Java 8的API编译，这里通过反射加载事件类。构建时没有编译事件类，或运行在没有jdk.jfr的JVM上时，
+ * 两个方法都是空操作。没有开启JFR记录时，事件在isEnabled()处直接返回。
+ * 可以用 -XX:StartFlightRecording 或 jcmd JFR.start 开启记录，在JMC中按Blendoku分类查看
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class SolverEvents {
+    // 提交事件的实现类，在src/main/jfr中
+    private final static String RECORDER_CLASS = "cn.sissors.blendoku.FlightRecorderEvents";
+    // 事件类不可用时为null
+    private final static Recorder RECORDER = loadRecorder();
+
+    /**
+     * 提交事件的实现，方法的含义与SolverEvents的同名方法相同
+     */
+    interface Recorder {
+        void parsed(long decode, long segmentation, long gridDetection, Puzzle puzzle);
+
+        void searched(String mode, SearchResult result);
+    }
+
+    private SolverEvents() {
+    }
+
+    private static Recorder loadRecorder() {
+        try {
+            return (Recorder) Class.forName(RECORDER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * 提交解析事件，各阶段耗时单位为纳秒，含义见SolverStats.recordParse
+     */
+    static void parsed(long decode, long segmentation, long gridDetection, Puzzle puzzle) {
+        if (RECORDER != null) {
+            RECORDER.parsed(decode, segmentation, gridDetection, puzzle);
+        }
+    }
+
+    /**
+     * 提交搜索事件
+     *
+     * @param mode   搜索方式
+     * @param result 搜索结果
+     */
+    static void searched(String mode, SearchResult result) {
+        if (RECORDER != null) {
+            RECORDER.searched(mode, result);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package cn.sissors.blendoku;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次搜索的计数与耗时，用于分析不同关卡搜索时间的差异
+ * <p>
+ * 计数由MissionSearch与Incumbent在搜索中直接累加（并行时合并各分支），搜索结束后复制到这里，不可变。
+ * 各项的含义：
+ * searchedNodes为展开的节点数；prunedNodes、transposedNodes、deadEnds分别为被当前最优解、置换表、前向检查剪掉的节点数；
+ * symmetricBranches为因等价类对称而没有尝试的分支数；expandCalls与inferredCells为推导的调用次数与推导放置的色块数，
+ * 不包括排序候选色块时的试放；probeCalls为排序候选色块时试放、推导并回溯的次数；
+ * leafEvaluations为放置完的地图提交给Incumbent的次数；improvements为最优解被替换的次数；peakDepth为最大搜索深度
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class SolverMetrics {
+    private final long searchedNodes;
+    private final long prunedNodes;
+    private final long transposedNodes;
+    private final long deadEnds;
+    private final long symmetricBranches;
+    private final long expandCalls;
+    private final long inferredCells;
+    private final long probeCalls;
+    private final long leafEvaluations;
+    private final long improvements;
+    private final int peakDepth;
+    private final long searchNanos;
+
+    private SolverMetrics(MissionSearch missionSearch, Incumbent incumbent, long searchNanos) {
+        this.searchedNodes = missionSearch.getSearchedNodes();
+        this.prunedNodes = missionSearch.getPrunedNodes();
+        this.transposedNodes = missionSearch.getTransposedNodes();
+        this.deadEnds = missionSearch.getDeadEnds();
+        this.symmetricBranches = missionSearch.getSymmetricBranches();
+        this.expandCalls = missionSearch.getExpandCalls();
+        this.inferredCells = missionSearch.getInferredCells();
+        this.probeCalls = missionSearch.getProbeCalls();
+        this.leafEvaluations = missionSearch.getLeafEvaluations();
+        this.improvements = incumbent.getImprovements();
+        this.peakDepth = missionSearch.getPeakDepth();
+        this.searchNanos = searchNanos;
+    }
+
+    /**
+     * @param missionSearch 搜索结束后的搜索状态
+     * @param incumbent     搜索使用的Incumbent
+     * @param searchNanos   搜索的耗时，单位纳秒，包括初始推导
+     * @return 搜索的计数与耗时
+     */
+    public static SolverMetrics of(MissionSearch missionSearch, Incumbent incumbent, long searchNanos) {
+        return new SolverMetrics(missionSearch, incumbent, searchNanos);
+    }
+
+    public long getSearchedNodes() {
+        return searchedNodes;
+    }
+
+    public long getPrunedNodes() {
+        return prunedNodes;
+    }
+
+    public long getTransposedNodes() {
+        return transposedNodes;
+    }
+
+    public long getDeadEnds() {
+        return deadEnds;
+    }
+
+    public long getSymmetricBranches() {
+        return symmetricBranches;
+    }
+
+    public long getExpandCalls() {
+        return expandCalls;
+    }
+
+    public long getInferredCells() {
+        return inferredCells;
+    }
+
+    public long getProbeCalls() {
+        return probeCalls;
+    }
+
+    public long getLeafEvaluations() {
+        return leafEvaluations;
+    }
+
+    public long getImprovements() {
+        return improvements;
+    }
+
+    public int getPeakDepth() {
+        return peakDepth;
+    }
+
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * @return 一个JSON对象，各项与getter同名，耗时为毫秒
+     */
+    public String toJson() {
+        return "{\"searchedNodes\":" + searchedNodes + ",\"prunedNodes\":" + prunedNodes + ",\"transposedNodes\":" + transposedNodes
+                + ",\"deadEnds\":" + deadEnds + ",\"symmetricBranches\":" + symmetricBranches + ",\"expandCalls\":" + expandCalls
+                + ",\"inferredCells\":" + inferredCells + ",\"probeCalls\":" + probeCalls + ",\"leafEvaluations\":" + leafEvaluations + ",\"improvements\":" + improvements
+                + ",\"peakDepth\":" + peakDepth + ",\"searchMillis\":" + TimeUnit.NANOSECONDS.toMicros(searchNanos) / 1000.0 + "}";
+    }
+
+    @Override
+    public String toString() {
+        return "searched nodes: " + searchedNodes + ", pruned nodes: " + prunedNodes + ", transposed nodes: " + transposedNodes
+                + ", symmetric branches: " + symmetricBranches + ", dead ends: " + deadEnds + ", expand calls: " + expandCalls
+                + ", inferred cells: " + inferredCells + ", probe calls: " + probeCalls + ", leaf evaluations: " + leafEvaluations + ", improvements: " + improvements
+                + ", peak depth: " + peakDepth + ", search time: " + TimeUnit.NANOSECONDS.toMillis(searchNanos) + " ms";
+    }
+}
@@ -0,0 +1,174 @@
+package cn.sissors.blendoku;
+
+import java.io.PrintStream;
+
+/**
+ * 一次求解的配置，不可变，withXxx返回修改了一项的副本
+ * <p>
+ * defaults()读取blendoku.*系统属性，未设置的项使用默认值
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class SolverOptions {
+    // 搜索方式，dfs为深度优先搜索，astar为最佳优先搜索，anneal为贪心补全后模拟退火的局部搜索，beam为束搜索
+    private String searchMode = "dfs";
+    // 并行搜索的线程数，1为串行搜索
+    private int parallelism = 1;
+    // 每个关卡的时间预算，单位毫秒，0为不限制
+    private long timeoutMillis = 0;
+    // 置换表的内存上限，单位MB，0为不使用置换表
+    private int transpositionTableMegabytes = 16;
+    // 最佳优先搜索open表的内存上限，单位MB
+    private int openListMegabytes = 64;
+    // 局部搜索每条退火链的时间，单位毫秒，设置了时间预算时使用时间预算
+    private long annealMillis = 1000;
+    // 束搜索每层保留的节点数
+    private int beamWidth = 16;
+    // 视为可以互换的候选色块的最大偏离值，0为只合并颜色完全相同的色块；大于0时结果不再保证最优，见CandidateIndex
+    private int candidateEquivalenceDeviation = 0;
+    // 最优解更新时的回调，为null时不回调
+    private IncumbentListener listener;
+    // 搜索统计的输出，为null时不输出
+    private PrintStream log;
+
+    private SolverOptions() {
+    }
+
+    private SolverOptions(SolverOptions other) {
+        this.searchMode = other.searchMode;
+        this.parallelism = other.parallelism;
+        this.timeoutMillis = other.timeoutMillis;
+        this.transpositionTableMegabytes = other.transpositionTableMegabytes;
+        this.openListMegabytes = other.openListMegabytes;
+        this.annealMillis = other.annealMillis;
+        this.beamWidth = other.beamWidth;
+        this.candidateEquivalenceDeviation = other.candidateEquivalenceDeviation;
+        this.listener = other.listener;
+        this.log = other.log;
+    }
+
+    /**
+     * @return 按blendoku.search、blendoku.parallelism、blendoku.timeout、blendoku.tt.megabytes、
+     * blendoku.astar.megabytes、blendoku.anneal.millis、blendoku.beam.width与blendoku.equivalence设置的配置
+     */
+    public static SolverOptions defaults() {
+        SolverOptions options = new SolverOptions();
+        options.searchMode = System.getProperty("blendoku.search", options.searchMode);
+        options.parallelism = Integer.getInteger("blendoku.parallelism", options.parallelism);
+        options.timeoutMillis = Long.getLong("blendoku.timeout", options.timeoutMillis);
+        options.transpositionTableMegabytes = Integer.getInteger("blendoku.tt.megabytes", options.transpositionTableMegabytes);
+        options.openListMegabytes = Integer.getInteger("blendoku.astar.megabytes", options.openListMegabytes);
+        options.annealMillis = Long.getLong("blendoku.anneal.millis", options.annealMillis);
+        options.beamWidth = Integer.getInteger("blendoku.beam.width", options.beamWidth);
+        options.candidateEquivalenceDeviation = Integer.getInteger("blendoku.equivalence", options.candidateEquivalenceDeviation);
+        return options;
+    }
+
+    public SolverOptions withSearchMode(String searchMode) {
+        SolverOptions options = new SolverOptions(this);
+        options.searchMode = searchMode;
+        return options;
+    }
+
+    public SolverOptions withParallelism(int parallelism) {
+        SolverOptions options = new SolverOptions(this);
+        options.parallelism = parallelism;
+        return options;
+    }
+
+    public SolverOptions withTimeoutMillis(long timeoutMillis) {
+        SolverOptions options = new SolverOptions(this);
+        options.timeoutMillis = timeoutMillis;
+        return options;
+    }
+
+    public SolverOptions withTranspositionTableMegabytes(int transpositionTableMegabytes) {
+        SolverOptions options = new SolverOptions(this);
+        options.transpositionTableMegabytes = transpositionTableMegabytes;
+        return options;
+    }
+
+    public SolverOptions withOpenListMegabytes(int openListMegabytes) {
+        SolverOptions options = new SolverOptions(this);
+        options.openListMegabytes = openListMegabytes;
+        return options;
+    }
+
+    public SolverOptions withAnnealMillis(long annealMillis) {
+        SolverOptions options = new SolverOptions(this);
+        options.annealMillis = annealMillis;
+        return options;
+    }
+
+    public SolverOptions withBeamWidth(int beamWidth) {
+        SolverOptions options = new SolverOptions(this);
+        options.beamWidth = beamWidth;
+        return options;
+    }
+
+    public SolverOptions withCandidateEquivalenceDeviation(int candidateEquivalenceDeviation) {
+        SolverOptions options = new SolverOptions(this);
+        options.candidateEquivalenceDeviation = candidateEquivalenceDeviation;
+        return options;
+    }
+
+    public SolverOptions withListener(IncumbentListener listener) {
+        SolverOptions options = new SolverOptions(this);
+        options.listener = listener;
+        return options;
+    }
+
+    public SolverOptions withLog(PrintStream log) {
+        SolverOptions options = new SolverOptions(this);
+        options.log = log;
+        return options;
+    }
+
+    /**
+     * @return 按timeoutMillis设置的时间预算，每个关卡一个
+     */
+    public SearchBudget newBudget() {
+        return timeoutMillis > 0 ? SearchBudget.withTimeout(timeoutMillis) : SearchBudget.unlimited();
+    }
+
+    public String getSearchMode() {
+        return searchMode;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public int getTranspositionTableMegabytes() {
+        return transpositionTableMegabytes;
+    }
+
+    public int getOpenListMegabytes() {
+        return openListMegabytes;
+    }
+
+    public long getAnnealMillis() {
+        return annealMillis;
+    }
+
+    public int getBeamWidth() {
+        return beamWidth;
+    }
+
+    public int getCandidateEquivalenceDeviation() {
+        return candidateEquivalenceDeviation;
+    }
+
+    public IncumbentListener getListener() {
+        return listener;
+    }
+
+    public PrintStream getLog() {
+        return log;
+    }
+}
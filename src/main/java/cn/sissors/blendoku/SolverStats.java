@@ -0,0 +1,212 @@
+package cn.sissors.blendoku;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内所有求解的累计统计，注册为JMX MBean cn.sissors.blendoku:type=SolverStats
+ * <p>
+ * 由-Dblendoku.jmx=true开启，默认关闭；关闭时不注册MBean，record*直接返回。
+ * 每个关卡只在解析与搜索结束时各记录一次，搜索中的计数由MissionSearch自己累加，见SolverMetrics，
+ * 因此开启后对搜索速度也没有可见的影响。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class SolverStats implements SolverStatsMBean {
+    // 是否开启统计并注册MBean
+    private final static boolean ENABLED = Boolean.getBoolean("blendoku.jmx");
+    // MBean的名称
+    private final static String OBJECT_NAME = "cn.sissors.blendoku:type=SolverStats";
+    // 开启时的唯一实例，关闭时为null
+    private final static SolverStats INSTANCE = ENABLED ? register(new SolverStats()) : null;
+
+    private final LongAdder parsedPuzzles = new LongAdder();
+    private final LongAdder solvedPuzzles = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder segmentationNanos = new LongAdder();
+    private final LongAdder gridDetectionNanos = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder searchedNodes = new LongAdder();
+    private final LongAdder prunedNodes = new LongAdder();
+    private final LongAdder transposedNodes = new LongAdder();
+    private final LongAdder deadEnds = new LongAdder();
+    private final LongAdder expandCalls = new LongAdder();
+    private final LongAdder inferredCells = new LongAdder();
+    private final LongAdder probeCalls = new LongAdder();
+    private final LongAdder leafEvaluations = new LongAdder();
+    private final LongAdder improvements = new LongAdder();
+    private final LongAccumulator peakDepth = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxSearchNanos = new LongAccumulator(Math::max, 0);
+    private volatile SolverMetrics last;
+
+    private SolverStats() {
+    }
+
+    private static SolverStats register(SolverStats stats) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        return stats;
+    }
+
+    /**
+     * 记录一个关卡的解析耗时，单位纳秒
+     *
+     * @param decode        截图转换为ImageRGB，由字节解析时包括解码
+     * @param segmentation  提取候选色块与给定色块
+     * @param gridDetection 检测网格并生成地图
+     */
+    static void recordParse(long decode, long segmentation, long gridDetection) {
+        SolverStats stats = INSTANCE;
+        if (stats == null) {
+            return;
+        }
+        stats.parsedPuzzles.increment();
+        stats.decodeNanos.add(decode);
+        stats.segmentationNanos.add(segmentation);
+        stats.gridDetectionNanos.add(gridDetection);
+    }
+
+    /**
+     * 记录一个关卡的搜索计数与耗时
+     */
+    static void recordSearch(SolverMetrics metrics) {
+        SolverStats stats = INSTANCE;
+        if (stats == null) {
+            return;
+        }
+        stats.solvedPuzzles.increment();
+        stats.searchNanos.add(metrics.getSearchNanos());
+        stats.searchedNodes.add(metrics.getSearchedNodes());
+        stats.prunedNodes.add(metrics.getPrunedNodes());
+        stats.transposedNodes.add(metrics.getTransposedNodes());
+        stats.deadEnds.add(metrics.getDeadEnds());
+        stats.expandCalls.add(metrics.getExpandCalls());
+        stats.inferredCells.add(metrics.getInferredCells());
+        stats.probeCalls.add(metrics.getProbeCalls());
+        stats.leafEvaluations.add(metrics.getLeafEvaluations());
+        stats.improvements.add(metrics.getImprovements());
+        stats.peakDepth.accumulate(metrics.getPeakDepth());
+        stats.maxSearchNanos.accumulate(metrics.getSearchNanos());
+        stats.last = metrics;
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public long getParsedPuzzles() {
+        return parsedPuzzles.sum();
+    }
+
+    @Override
+    public long getSolvedPuzzles() {
+        return solvedPuzzles.sum();
+    }
+
+    @Override
+    public long getDecodeMillis() {
+        return millis(decodeNanos.sum());
+    }
+
+    @Override
+    public long getSegmentationMillis() {
+        return millis(segmentationNanos.sum());
+    }
+
+    @Override
+    public long getGridDetectionMillis() {
+        return millis(gridDetectionNanos.sum());
+    }
+
+    @Override
+    public long getSearchMillis() {
+        return millis(searchNanos.sum());
+    }
+
+    @Override
+    public long getSearchedNodes() {
+        return searchedNodes.sum();
+    }
+
+    @Override
+    public long getPrunedNodes() {
+        return prunedNodes.sum();
+    }
+
+    @Override
+    public long getTransposedNodes() {
+        return transposedNodes.sum();
+    }
+
+    @Override
+    public long getDeadEnds() {
+        return deadEnds.sum();
+    }
+
+    @Override
+    public long getExpandCalls() {
+        return expandCalls.sum();
+    }
+
+    @Override
+    public long getInferredCells() {
+        return inferredCells.sum();
+    }
+
+    @Override
+    public long getProbeCalls() {
+        return probeCalls.sum();
+    }
+
+    @Override
+    public long getLeafEvaluations() {
+        return leafEvaluations.sum();
+    }
+
+    @Override
+    public long getImprovements() {
+        return improvements.sum();
+    }
+
+    @Override
+    public int getPeakDepth() {
+        return (int) peakDepth.get();
+    }
+
+    @Override
+    public long getMaxSearchMillis() {
+        return millis(maxSearchNanos.get());
+    }
+
+    @Override
+    public long getLastSearchMillis() {
+        SolverMetrics metrics = last;
+        return metrics != null ? millis(metrics.getSearchNanos()) : 0;
+    }
+
+    @Override
+    public long getLastSearchedNodes() {
+        SolverMetrics metrics = last;
+        return metrics != null ? metrics.getSearchedNodes() : 0;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : new LongAdder[]{parsedPuzzles, solvedPuzzles, decodeNanos, segmentationNanos, gridDetectionNanos, searchNanos,
+                searchedNodes, prunedNodes, transposedNodes, deadEnds, expandCalls, inferredCells, probeCalls, leafEvaluations, improvements}) {
+            adder.reset();
+        }
+        peakDepth.reset();
+        maxSearchNanos.reset();
+        last = null;
+    }
+}
@@ -0,0 +1,64 @@
+package cn.sissors.blendoku;
+
+/**
+ * SolverStats的JMX接口，时间为毫秒，计数为进程启动（或上一次reset）以来所有关卡的累计值
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public interface SolverStatsMBean {
+    long getParsedPuzzles();
+
+    long getSolvedPuzzles();
+
+    long getDecodeMillis();
+
+    long getSegmentationMillis();
+
+    long getGridDetectionMillis();
+
+    long getSearchMillis();
+
+    long getSearchedNodes();
+
+    long getPrunedNodes();
+
+    long getTransposedNodes();
+
+    long getDeadEnds();
+
+    long getExpandCalls();
+
+    long getInferredCells();
+
+    long getProbeCalls();
+
+    long getLeafEvaluations();
+
+    long getImprovements();
+
+    /**
+     * @return 所有关卡中最大的搜索深度
+     */
+    int getPeakDepth();
+
+    /**
+     * @return 所有关卡中最长的搜索时间
+     */
+    long getMaxSearchMillis();
+
+    /**
+     * @return 最近一个关卡的搜索时间
+     */
+    long getLastSearchMillis();
+
+    /**
+     * @return 最近一个关卡展开的节点数
+     */
+    long getLastSearchedNodes();
+
+    /**
+     * 清零所有统计
+     */
+    void reset();
+}
@@ -0,0 +1,89 @@
+package cn.sissors.blendoku;
+
+import java.util.Arrays;
+
+/**
+ * 置换表，记录已经完整搜索过的状态之后还会产生的偏离值下界
+ * <p>
+ * 状态的之后偏离值只取决于Zobrist哈希所覆盖的内容，与到达它之前已经计入的偏离值无关；
+ * 一个状态的子树搜索完之后，子树中任何补全方式的总偏离值都不小于此时的最优解，
+ * 因此 最优解 - 当前偏离值 是之后偏离值的下界，再次到达该状态时可以直接用它剪枝。
+ * <p>
+ * 表的大小由内存上限决定，每个桶两项；桶满时淘汰剩余BLANK较少的一项，即重新搜索代价较小的一项。
+ * 项中存放 哈希值 ^ 下界的bit 与 下界的bit，读到被并发写坏的项时校验不通过，当作没有记录，因此可以被多个线程无锁共享。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class TranspositionTable {
+    // 每项占用的字节数：校验键、下界、剩余BLANK数量
+    private final static int ENTRY_BYTES = 8 + 8 + 4;
+
+    private final int mask;
+    private final long[] checks;
+    private final long[] bounds;
+    private final int[] remains;
+
+    /**
+     * @param megabytes 内存上限，单位MB
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(2, (long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        int capacity = (int) Long.highestOneBit(Math.min(entries, 1 << 30));
+        this.mask = capacity / 2 - 1;
+        this.checks = new long[capacity];
+        this.bounds = new long[capacity];
+        this.remains = new int[capacity];
+    }
+
+    /**
+     * 清空所有记录，用于复用同一张表求解下一个关卡
+     */
+    public void clear() {
+        Arrays.fill(checks, 0);
+        Arrays.fill(bounds, 0);
+        Arrays.fill(remains, 0);
+    }
+
+    /**
+     * @param key 状态的哈希值
+     * @return 之后偏离值的下界，没有记录时为0
+     */
+    public double get(long key) {
+        int slot = ((int) key & mask) << 1;
+        for (int k = slot; k < slot + 2; k++) {
+            long bits = bounds[k];
+            if ((checks[k] ^ bits) == key) {
+                return Double.longBitsToDouble(bits);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 记录一个已经完整搜索过的状态
+     *
+     * @param key    状态的哈希值
+     * @param bound  之后偏离值的下界
+     * @param remain 该状态剩余的BLANK数量
+     */
+    public void put(long key, double bound, int remain) {
+        int slot = ((int) key & mask) << 1;
+        int victim = slot;
+        for (int k = slot; k < slot + 2; k++) {
+            long bits = bounds[k];
+            if ((checks[k] ^ bits) == key) {
+                bound = Math.max(bound, Double.longBitsToDouble(bits));
+                victim = k;
+                break;
+            }
+            if (remains[k] < remains[victim]) {
+                victim = k;
+            }
+        }
+        long bits = Double.doubleToLongBits(bound);
+        bounds[victim] = bits;
+        checks[victim] = key ^ bits;
+        remains[victim] = remain;
+    }
+}
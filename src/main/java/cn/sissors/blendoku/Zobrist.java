@@ -0,0 +1,75 @@
+package cn.sissors.blendoku;
+
+import java.util.Random;
+
+/**
+ * 搜索状态的Zobrist随机键
+ * <p>
+ * 状态的哈希值是以下各项的异或：
+ * 1. 每个已使用的候选色块c：candidate(c)
+ * 2. 每个FILLED格子：所在两条线段都已放置完时为settled(index)，只与格子位置有关；否则为cell(index, c)，与放置的色块有关
+ * 两条线段都已放置完的格子不再影响之后的推导与偏离值，因此只记录它被占用，
+ * 这样不同顺序放置出的、只在这些格子上互换了色块的状态会得到相同的哈希值。
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class Zobrist {
+    // 固定种子，保证每次运行的哈希值一致
+    private final static long SEED = 0x5EED_B1E4_D0C0L;
+
+    private final int cells;
+    private final int candidates;
+    private final long[] cellKeys;
+    private final long[] settledKeys;
+    private final long[] candidateKeys;
+
+    /**
+     * @param cells      地图格子数量，可以大于实际的地图
+     * @param candidates 候选色块数量，可以大于实际的候选色块数量
+     */
+    public Zobrist(int cells, int candidates) {
+        Random random = new Random(SEED);
+        this.cells = cells;
+        this.candidates = candidates;
+        this.cellKeys = new long[cells * candidates];
+        this.settledKeys = new long[cells];
+        this.candidateKeys = new long[candidates];
+        for (int k = 0; k < cellKeys.length; k++) {
+            cellKeys[k] = random.nextLong();
+        }
+        for (int k = 0; k < settledKeys.length; k++) {
+            settledKeys[k] = random.nextLong();
+        }
+        for (int k = 0; k < candidateKeys.length; k++) {
+            candidateKeys[k] = random.nextLong();
+        }
+    }
+
+    /**
+     * @return 是否足以用于cells个格子与candidates个候选色块的地图
+     */
+    public boolean covers(int cells, int candidates) {
+        return cells <= this.cells && candidates <= this.candidates;
+    }
+
+    public int getCells() {
+        return cells;
+    }
+
+    public int getCandidates() {
+        return candidates;
+    }
+
+    public long cell(int index, int candidate) {
+        return cellKeys[index * candidates + candidate];
+    }
+
+    public long settled(int index) {
+        return settledKeys[index];
+    }
+
+    public long candidate(int candidate) {
+        return candidateKeys[candidate];
+    }
+}
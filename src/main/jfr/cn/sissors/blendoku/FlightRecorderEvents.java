@@ -0,0 +1,124 @@
+package cn.sissors.blendoku;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * SolverEvents.Recorder的JFR实现：提交cn.sissors.blendoku.Parse与cn.sissors.blendoku.Search事件
+ * <p>
+ * 放在单独的源码目录src/main/jfr，用release 11编译，主代码只通过反射加载，见SolverEvents
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+class FlightRecorderEvents implements SolverEvents.Recorder {
+    @Name("cn.sissors.blendoku.Parse")
+    @Label("Blendoku Parse")
+    @Category("Blendoku")
+    @Description("截图解析各阶段的耗时")
+    private static class ParseEvent extends Event {
+        @Label("Decode")
+        @Timespan(Timespan.NANOSECONDS)
+        long decode;
+        @Label("Segmentation")
+        @Timespan(Timespan.NANOSECONDS)
+        long segmentation;
+        @Label("Grid Detection")
+        @Timespan(Timespan.NANOSECONDS)
+        long gridDetection;
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Candidates")
+        int candidates;
+
+        static void emit(long decode, long segmentation, long gridDetection, Puzzle puzzle) {
+            ParseEvent event = new ParseEvent();
+            if (!event.isEnabled()) {
+                return;
+            }
+            event.decode = decode;
+            event.segmentation = segmentation;
+            event.gridDetection = gridDetection;
+            event.width = puzzle.getMissionMap().getWidth();
+            event.height = puzzle.getMissionMap().getHeight();
+            event.candidates = puzzle.getCandidateColors().length;
+            event.commit();
+        }
+    }
+
+    @Name("cn.sissors.blendoku.Search")
+    @Label("Blendoku Search")
+    @Category("Blendoku")
+    @Description("一个关卡的搜索计数与耗时，含义见SolverMetrics")
+    private static class SearchEvent extends Event {
+        @Label("Mode")
+        String mode;
+        @Label("Deviation")
+        double deviation;
+        @Label("Exhausted")
+        @Description("推导限制后的搜索空间已经穷尽，不代表全局最优")
+        boolean exhausted;
+        @Label("Search Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long search;
+        @Label("Searched Nodes")
+        long searchedNodes;
+        @Label("Pruned Nodes")
+        long prunedNodes;
+        @Label("Transposed Nodes")
+        long transposedNodes;
+        @Label("Dead Ends")
+        long deadEnds;
+        @Label("Expand Calls")
+        long expandCalls;
+        @Label("Inferred Cells")
+        long inferredCells;
+        @Label("Probe Calls")
+        long probeCalls;
+        @Label("Leaf Evaluations")
+        long leafEvaluations;
+        @Label("Improvements")
+        long improvements;
+        @Label("Peak Depth")
+        int peakDepth;
+
+        static void emit(String mode, SearchResult result) {
+            SearchEvent event = new SearchEvent();
+            if (!event.isEnabled()) {
+                return;
+            }
+            SolverMetrics metrics = result.getMetrics();
+            event.mode = mode;
+            event.deviation = result.getDeviation();
+            event.exhausted = result.isExhausted();
+            event.search = metrics.getSearchNanos();
+            event.searchedNodes = metrics.getSearchedNodes();
+            event.prunedNodes = metrics.getPrunedNodes();
+            event.transposedNodes = metrics.getTransposedNodes();
+            event.deadEnds = metrics.getDeadEnds();
+            event.expandCalls = metrics.getExpandCalls();
+            event.inferredCells = metrics.getInferredCells();
+            event.probeCalls = metrics.getProbeCalls();
+            event.leafEvaluations = metrics.getLeafEvaluations();
+            event.improvements = metrics.getImprovements();
+            event.peakDepth = metrics.getPeakDepth();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void parsed(long decode, long segmentation, long gridDetection, Puzzle puzzle) {
+        ParseEvent.emit(decode, segmentation, gridDetection, puzzle);
+    }
+
+    @Override
+    public void searched(String mode, SearchResult result) {
+        SearchEvent.emit(mode, result);
+    }
+}
@@ -0,0 +1,120 @@
+package cn.sissors.blendoku;
+
+import com.google.common.collect.Lists;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 打包的11张截图在各种搜索方式下的偏离值：串行与并行深度优先搜索、最佳优先搜索、束搜索的结果必须一致；
+ * 局部搜索的结果不差于贪心补全，并且是合法的完整放置
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class BlendokuSolverTest {
+    // 第k张截图（k.PNG）深度优先搜索的偏离值
+    private final static double[] DEVIATIONS = {36918.725, 52056.6, 38300.0, 5222.063888888889, 4174.2, 19132.933333333334,
+            38587.916666666664, 7851.313888888889, 7851.313888888889, 9330.566666666668, 71966.39722222221};
+    private final static double DELTA = 1e-6;
+
+    private static final BlendokuSolver solver = new BlendokuSolver();
+    private static final Puzzle[] puzzles = new Puzzle[DEVIATIONS.length];
+
+    @BeforeClass
+    public static void parse() throws IOException {
+        for (int k = 0; k < puzzles.length; k++) {
+            try (InputStream inputStream = BlendokuSolverTest.class.getResourceAsStream("/" + (k + 1) + ".PNG")) {
+                puzzles[k] = solver.parse(ImageIO.read(inputStream));
+            }
+        }
+    }
+
+    @AfterClass
+    public static void close() {
+        solver.close();
+    }
+
+    /**
+     * @param options    搜索配置
+     * @param exhaustive 是否还要求搜索空间已经穷尽；束搜索截断过某一层时不穷尽，但偏离值仍应一致
+     */
+    private static void assertDeviations(SolverOptions options, boolean exhaustive) {
+        for (int k = 0; k < puzzles.length; k++) {
+            SearchResult result = solver.solve(puzzles[k], options);
+            assertEquals((k + 1) + ".PNG", DEVIATIONS[k], result.getDeviation(), DELTA);
+            if (exhaustive) {
+                assertTrue((k + 1) + ".PNG", result.isExhausted());
+            }
+        }
+    }
+
+    private static SolverOptions options(String searchMode, int parallelism) {
+        return SolverOptions.defaults().withSearchMode(searchMode).withParallelism(parallelism).withTimeoutMillis(0)
+                .withCandidateEquivalenceDeviation(0).withBeamWidth(16);
+    }
+
+    @Test
+    public void sequentialSearch() {
+        assertDeviations(options("dfs", 1), true);
+    }
+
+    @Test
+    public void parallelSearch() {
+        assertDeviations(options("dfs", 4), true);
+    }
+
+    @Test
+    public void bestFirstSearch() {
+        assertDeviations(options("astar", 1), true);
+    }
+
+    @Test
+    public void beamSearch() {
+        assertDeviations(options("beam", 1), false);
+        assertDeviations(options("beam", 4), false);
+    }
+
+    @Test
+    public void annealSearch() {
+        // 3.PNG上局部搜索明显优于深度优先搜索，见SearchResult.isExhausted
+        Puzzle puzzle = puzzles[2];
+        List<Double> improvements = Lists.newArrayList();
+        // 单线程时只有一条种子固定的退火链；第一次更新是贪心补全的结果
+        SolverOptions options = options("anneal", 1).withAnnealMillis(200)
+                .withListener((deviation, missionMap) -> improvements.add(deviation));
+        SearchResult result = solver.solve(puzzle, options);
+        assertFalse(improvements.isEmpty());
+        assertTrue(result.getDeviation() + " > " + improvements.get(0), result.getDeviation() <= improvements.get(0));
+        assertFalse(result.isExhausted());
+
+        MissionMap missionMap = puzzle.getMissionMap();
+        MissionMap solved = result.getMissionMap();
+        int[] candidateColors = puzzle.getCandidateColors();
+        boolean[] used = new boolean[candidateColors.length];
+        for (int x = 0; x < missionMap.getWidth(); x++) {
+            for (int y = 0; y < missionMap.getHeight(); y++) {
+                String point = "(" + x + ", " + y + ")";
+                if (missionMap.getType(x, y) != MissionMap.Type.BLANK) {
+                    assertEquals(point, missionMap.getType(x, y), solved.getType(x, y));
+                    continue;
+                }
+                assertEquals(point, MissionMap.Type.FILLED, solved.getType(x, y));
+                int candidate = solved.getCandidate(x, y);
+                assertFalse(point + " reuses candidate " + candidate, used[candidate]);
+                used[candidate] = true;
+                assertEquals(point, candidateColors[candidate], solved.getColor(x, y));
+            }
+        }
+        assertEquals(new SegmentIndex(solved).getDeviation(), result.getDeviation(), DELTA);
+    }
+}
@@ -0,0 +1,66 @@
+package cn.sissors.blendoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 生成的关卡渲染为截图后再解析，地图与候选色块必须不变，搜索得到的偏离值不能超过埋入的解
+ *
+ * @author zyz
+ * @version 2019-05-11
+ */
+public class PuzzleGeneratorTest {
+    private final static long SEED = 2019;
+    // 偏离值是浮点累加的结果，比较时允许的误差
+    private final static double DELTA = 1e-6;
+
+    private static void assertRoundTrip(int size, PuzzleGenerator.Shape shape) {
+        String name = String.format("%s-%02dx%02d", shape.name().toLowerCase(), size, size);
+        // 与PuzzleGenerator.main使用相同的种子与参数
+        PuzzleGenerator generator = new PuzzleGenerator(SEED * 31 + size * 2 + shape.ordinal());
+        Puzzle generated = generator.generate(name, size, size, shape, 3, size, 0.25, size / 2);
+        Blendoku blendoku = new Blendoku(ImageRGB.of(PuzzleGenerator.render(generated)));
+
+        MissionMap expected = generated.getMissionMap();
+        MissionMap parsed = blendoku.getMissionMap();
+        assertEquals(name, expected.getWidth(), parsed.getWidth());
+        assertEquals(name, expected.getHeight(), parsed.getHeight());
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                String point = name + " (" + x + ", " + y + ")";
+                assertEquals(point, expected.getType(x, y), parsed.getType(x, y));
+                if (expected.getType(x, y) == MissionMap.Type.FIXED) {
+                    assertEquals(point, expected.getColor(x, y), parsed.getColor(x, y));
+                }
+            }
+        }
+        assertArrayEquals(name, generated.getCandidateColors(), blendoku.getCandidateColors());
+
+        Puzzle puzzle = new Puzzle(parsed, blendoku.getCandidateColors());
+        SolverOptions options = SolverOptions.defaults().withSearchMode("dfs").withParallelism(1).withTimeoutMillis(0)
+                .withCandidateEquivalenceDeviation(0);
+        SearchResult result;
+        try (BlendokuSolver solver = new BlendokuSolver()) {
+            result = solver.solve(puzzle, options);
+        }
+        assertTrue(name + ": " + result.getDeviation() + " > " + generated.getDeviation(),
+                result.getDeviation() <= generated.getDeviation() + DELTA);
+    }
+
+    @Test
+    public void rectangles() {
+        for (int size = 3; size <= 6; size++) {
+            assertRoundTrip(size, PuzzleGenerator.Shape.RECTANGLE);
+        }
+    }
+
+    @Test
+    public void strokes() {
+        for (int size = 3; size <= 6; size++) {
+            assertRoundTrip(size, PuzzleGenerator.Shape.STROKES);
+        }
+    }
+}